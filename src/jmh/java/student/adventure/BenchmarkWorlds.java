@@ -0,0 +1,94 @@
+package student.adventure;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Worlds of a fixed shape and a chosen size for the benchmarks. Rooms form a ring joined East to
+ * West; every tenth room, starting with "Room 1", is a store with a long stock list, and "Room 2"
+ * requires eight items found elsewhere. Every benchmark starts in "Room 0", next to a store.
+ */
+final class BenchmarkWorlds {
+
+  static final String START = "Room 0";
+  static final String STORE = "Room 1";
+  static final String LOCKED = "Room 2";
+  static final int STOCK = 32;
+
+  private static final String DESCRIPTION = repeat("A plain room with bare walls. ", 7);
+
+  private BenchmarkWorlds() {
+  }
+
+  /**
+   * Returns the number of rooms in a world of the given size
+   *
+   * @param size "small", "medium" or "huge"
+   * @return
+   */
+  static int rooms(String size) {
+    switch (size) {
+      case "small":
+        return 16;
+      case "medium":
+        return 10000;
+      case "huge":
+        return 200000;
+      default:
+        throw new IllegalArgumentException("Unknown world size: " + size);
+    }
+  }
+
+  /**
+   * Writes the JSON of a world of the given size to a temporary file
+   *
+   * @param size
+   * @return
+   * @throws IOException
+   */
+  static Path write(String size) throws IOException {
+    int rooms = rooms(size);
+    Path path = Files.createTempFile("benchmark-" + size, ".json");
+    try (Writer out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+      out.write("{\"Configuration\": {\"startingRoom\": \"" + START + "\","
+          + " \"initializationText\": \"Benchmark\", \"victoryText\": \"Done\"},\n\"Rooms\": {\n");
+      for (int i = 0; i < rooms; i++) {
+        boolean store = i % 10 == 1;
+        out.write(i == 0 ? "" : ",\n");
+        out.write("\"Room " + i + "\": {\"name\": \"Room " + i + "\", \"type\": \""
+            + (store ? "store" : "room") + "\", \"description\": \"" + DESCRIPTION + "\",");
+        out.write(" \"items\": {" + item("Item " + i, i));
+        for (int s = 0; store && s < STOCK; s++) {
+          out.write(", " + item("Stock " + i + "-" + s, s));
+        }
+        out.write("}, \"requirements\": [");
+        if (i == 2) {
+          for (int r = 3; r < 11; r++) {
+            out.write((r == 3 ? "" : ", ") + "\"Item " + r + "\"");
+          }
+        }
+        out.write("], \"directions\": {\"East\": \"Room " + (i + 1) % rooms + "\", \"West\": \"Room "
+            + (i + rooms - 1) % rooms + "\"}}");
+      }
+      out.write("\n}}\n");
+    }
+    return path;
+  }
+
+  private static String item(String name, int value) {
+    return "\"" + name.toLowerCase() + "\": {\"name\": \"" + name
+        + "\", \"description\": \"A benchmark item.\", \"value\": " + (value % 50 + 1) + "}";
+  }
+
+  private static String repeat(String text, int times) {
+    char[] chars = new char[text.length() * times];
+    for (int i = 0; i < times; i++) {
+      text.getChars(0, text.length(), chars, i * text.length());
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,97 @@
+package student.adventure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-command costs of the engine. Commands that change state are measured in pairs that undo
+ * each other, so every invocation starts from the same state.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EngineBenchmark {
+
+  @Param({"small", "medium", "huge"})
+  public String size;
+
+  private GameEngine engine;
+  private GameEngine shopper;
+  private CommandParser parser;
+  private int lockedRoom;
+
+  @Setup
+  public void setUp() throws IOException {
+    Path path = BenchmarkWorlds.write(size);
+    World world;
+    try {
+      world = WorldLoader.load(path);
+    } finally {
+      Files.delete(path);
+    }
+
+    engine = new GameEngine(world);
+    parser = new CommandParser();
+    lockedRoom = world.getRoomId(BenchmarkWorlds.LOCKED);
+
+    // The shopper stands in the store holding something to sell, with money to buy it back
+    shopper = new GameEngine(world);
+    shopper.takeItem("Item 0");
+    shopper.changeDirection("East");
+    shopper.getPlayer().addMoney(100000);
+  }
+
+  @Benchmark
+  public Result goAndReturn() {
+    engine.changeDirection("East");
+    return engine.changeDirection("West");
+  }
+
+  @Benchmark
+  public Result takeAndDrop() {
+    engine.takeItem("Item 0");
+    return engine.dropItem("Item 0");
+  }
+
+  @Benchmark
+  public Result sellAndBuy() {
+    shopper.sellItem("Item 0");
+    return shopper.buyItem("Item 0");
+  }
+
+  @Benchmark
+  public String missingRequirements() {
+    return Helper.getMissingRequirements(lockedRoom, engine);
+  }
+
+  @Benchmark
+  public String storeItemList() {
+    return Helper.buildStringFromList(StringList.ITEMS, shopper);
+  }
+
+  @Benchmark
+  public String describeRoom() {
+    return Helper.describeRoom(engine);
+  }
+
+  @Benchmark
+  public Result parseCommand() {
+    return parser.perform(engine, "  MONEY  ");
+  }
+}
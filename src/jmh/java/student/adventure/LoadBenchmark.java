@@ -0,0 +1,51 @@
+package student.adventure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to stream, validate and compile a generated world from JSON
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LoadBenchmark {
+
+  @Param({"small", "medium", "huge"})
+  public String size;
+
+  private Path path;
+
+  @Setup
+  public void setUp() throws IOException {
+    path = Files.createTempFile("benchmark-" + size, ".json");
+    new WorldGenerator(1).rooms(BenchmarkWorlds.rooms(size)).write(path);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(path);
+  }
+
+  @Benchmark
+  public World loadJson() throws IOException {
+    return WorldLoader.load(path);
+  }
+}
@@ -0,0 +1,78 @@
+package student.adventure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Take and drop throughput of players in one shared world. Spread out, every thread plays in a
+ * room of its own and should scale with cores; crowded, they all fight over the starting room.
+ * Compare runs with different thread counts, e.g. -t 1 and -t 8, through jmh.args.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(Threads.MAX)
+public class SharedWorldBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class SharedWorld {
+
+    @Param({"spread", "crowded"})
+    public String players;
+
+    private World world;
+    private SharedWorldState state;
+    private final AtomicInteger joined = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws IOException {
+      Path path = BenchmarkWorlds.write("medium");
+      try {
+        world = WorldLoader.load(path);
+      } finally {
+        Files.delete(path);
+      }
+      state = new SharedWorldState(world);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Player {
+
+    private GameEngine engine;
+    private String item;
+
+    @Setup
+    public void setUp(SharedWorld shared) {
+      engine = new GameEngine(shared.world, shared.state);
+
+      // Rooms ending in 3 are never stores
+      int room = shared.players.equals("spread") ? shared.joined.getAndIncrement() * 10 + 3 : 0;
+      engine.teleport("Room " + room);
+      item = "Item " + room;
+    }
+  }
+
+  @Benchmark
+  public Result takeAndDrop(Player player) {
+    player.engine.takeItem(player.item);
+    return player.engine.dropItem(player.item);
+  }
+}
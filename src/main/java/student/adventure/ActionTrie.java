@@ -0,0 +1,143 @@
+package student.adventure;
+
+/**
+ * Precompiled trie of command verbs. A verb matches either exactly or, when it is a prefix of only
+ * one verb, as an abbreviation (e.g. "inv" for "inventory"). Aliases bind a word to an action with
+ * a fixed argument (e.g. "n" for "go north"). Lookups walk the trie over a char buffer without
+ * allocating; the trie is immutable once built and shared by every parser.
+ */
+class ActionTrie {
+
+  private static final Binding AMBIGUOUS = new Binding(null, null);
+
+  private final Node root = new Node();
+  private boolean compiled;
+
+  /**
+   * Binds a lowercase word to an action
+   *
+   * @param word
+   * @param action
+   * @param argument fixed argument for aliases, or null to use the command's own argument
+   */
+  void add(String word, Action action, String argument) {
+    if (compiled) {
+      throw new IllegalStateException("Trie is already compiled");
+    }
+    Node node = root;
+    for (int i = 0; i < word.length(); i++) {
+      int index = indexOf(word.charAt(i));
+      if (index < 0) {
+        throw new IllegalArgumentException("Verbs may only contain letters: " + word);
+      }
+      if (node.children[index] == null) {
+        node.children[index] = new Node();
+      }
+      node = node.children[index];
+    }
+    node.exact = new Binding(action, argument == null ? null : new CharSlice(argument));
+  }
+
+  /**
+   * Resolves abbreviations; no words can be added afterwards
+   *
+   * @return this trie
+   */
+  ActionTrie compile() {
+    resolvePrefixes(root);
+    compiled = true;
+    return this;
+  }
+
+  /**
+   * Returns the binding of the verb in the given buffer range, or null if there is none or the
+   * abbreviation is ambiguous
+   *
+   * @param buffer lowercase characters
+   * @param from
+   * @param to
+   * @return
+   */
+  Binding find(char[] buffer, int from, int to) {
+    Node node = root;
+    for (int i = from; i < to && node != null; i++) {
+      int index = indexOf(buffer[i]);
+      node = index < 0 ? null : node.children[index];
+    }
+    if (node == null || from == to) {
+      return null;
+    }
+    if (node.exact != null) {
+      return node.exact;
+    }
+    return node.prefix == AMBIGUOUS ? null : node.prefix;
+  }
+
+  /**
+   * Returns the binding of the given verb, or null if there is none
+   *
+   * @param verb
+   * @return
+   */
+  Binding find(String verb) {
+    char[] buffer = verb.toLowerCase().toCharArray();
+    return find(buffer, 0, buffer.length);
+  }
+
+  /**
+   * Computes the binding every word below each node shares, or AMBIGUOUS if they differ
+   */
+  private static Binding resolvePrefixes(Node node) {
+    Binding shared = node.exact;
+    for (Node child : node.children) {
+      if (child != null) {
+        shared = merge(shared, resolvePrefixes(child));
+      }
+    }
+    node.prefix = shared;
+    return shared;
+  }
+
+  private static Binding merge(Binding a, Binding b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null || a.sameAs(b)) {
+      return a;
+    }
+    return AMBIGUOUS;
+  }
+
+  private static int indexOf(char c) {
+    return c >= 'a' && c <= 'z' ? c - 'a' : -1;
+  }
+
+  /**
+   * An action together with the fixed argument of an alias
+   */
+  static class Binding {
+
+    final Action action;
+    final CharSlice argument;
+
+    Binding(Action action, CharSlice argument) {
+      this.action = action;
+      this.argument = argument;
+    }
+
+    private boolean sameAs(Binding other) {
+      if (action != other.action) {
+        return false;
+      }
+      return argument == null ? other.argument == null
+          : other.argument != null && argument.toString().equals(other.argument.toString());
+    }
+  }
+
+  private static class Node {
+
+    private final Node[] children = new Node[26];
+    private Binding exact;
+    private Binding prefix;
+  }
+}
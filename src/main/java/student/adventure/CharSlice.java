@@ -0,0 +1,63 @@
+package student.adventure;
+
+/**
+ * A reusable view of a range of a char array. Parsers point one slice at each command's argument
+ * instead of allocating a new String per command.
+ */
+public final class CharSlice implements CharSequence {
+
+  private char[] buffer;
+  private int offset;
+  private int length;
+
+  /**
+   * Constructor to instantiate an empty slice
+   */
+  CharSlice() {
+    this.buffer = new char[0];
+  }
+
+  /**
+   * Constructor to instantiate a slice holding the given text
+   *
+   * @param text
+   */
+  CharSlice(String text) {
+    set(text.toCharArray(), 0, text.length());
+  }
+
+  /**
+   * Points this slice at the given range of the given buffer
+   *
+   * @param buffer
+   * @param from
+   * @param to
+   * @return this slice
+   */
+  CharSlice set(char[] buffer, int from, int to) {
+    this.buffer = buffer;
+    this.offset = from;
+    this.length = to - from;
+    return this;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return buffer[offset + index];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return new CharSlice().set(buffer, offset + start, offset + end);
+  }
+
+  @Override
+  public String toString() {
+    return new String(buffer, offset, length);
+  }
+}
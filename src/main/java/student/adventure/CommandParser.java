@@ -0,0 +1,97 @@
+package student.adventure;
+
+/**
+ * Splits a command into its verb and argument and performs it. The command is case-folded into a
+ * reusable buffer, the verb is matched with the shared ActionTrie and the argument is handed to
+ * the action as a slice of that buffer, so parsing allocates nothing per command.
+ *
+ * A parser reuses its buffer between commands, so each game needs its own parser.
+ */
+public class CommandParser {
+
+  // Built once and shared, the trie is never modified after compilation
+  private static final ActionTrie actions = IOHandler.buildActionTrie();
+  private static final LatencyHistogram unknown = Metrics.histogram(Metrics.ACTION_PREFIX
+      + "unknown");
+
+  private final CharSlice argument;
+  private char[] buffer;
+
+  /**
+   * Constructor to instantiate a parser with an empty buffer
+   */
+  public CommandParser() {
+    this.argument = new CharSlice();
+    this.buffer = new char[64];
+  }
+
+  /**
+   * Dissects action and arguments from inputted command and performs it on the given engine
+   *
+   * @param engine
+   * @param command
+   * @return Result of the performed action
+   */
+  public Result perform(GameEngine engine, CharSequence command) {
+    long started = System.nanoTime();
+
+    // Trim and fold the command into the buffer
+    int start = 0;
+    int end = command.length();
+    while (start < end && command.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && command.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int length = end - start;
+    if (buffer.length < length) {
+      buffer = new char[Math.max(length, buffer.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      buffer[i] = Character.toLowerCase(command.charAt(start + i));
+    }
+
+    // Separate the action from the argument
+    int verbEnd = 0;
+    while (verbEnd < length && buffer[verbEnd] != ' ') {
+      verbEnd++;
+    }
+    int argumentStart = verbEnd;
+    while (argumentStart < length && buffer[argumentStart] <= ' ') {
+      argumentStart++;
+    }
+
+    // If the trie knows this verb, command is potentially valid (argument may be invalid)
+    ActionTrie.Binding binding = actions.find(buffer, 0, verbEnd);
+    if (binding == null) {
+      Result result = handleInvalidCommand(new String(buffer, 0, length));
+      unknown.recordSince(started);
+      Metrics.countResult(State.FAILURE);
+      return result;
+    }
+    if (binding.argument != null) {
+      return binding.action.performAction(engine, binding.argument);
+    }
+    return binding.action.performAction(engine, argument.set(buffer, argumentStart, length));
+  }
+
+  /**
+   * Returns whether the given verb is a known command or abbreviation
+   *
+   * @param verb
+   * @return
+   */
+  public static boolean isAction(String verb) {
+    return actions.find(verb) != null;
+  }
+
+  /**
+   * Handles case of invalid command entered by user
+   *
+   * @param command
+   */
+  private static Result handleInvalidCommand(String command) {
+    return Result.of(Outcome.UNKNOWN_COMMAND, command);
+  }
+}
@@ -0,0 +1,55 @@
+package student.adventure;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered output to the console or any other stream. Unlike System.out, which locks and flushes
+ * on every line, nothing is written until the sink is flushed.
+ */
+public class ConsoleSink implements OutputSink {
+
+  private final Writer writer;
+
+  /**
+   * Constructor to write to standard output
+   */
+  public ConsoleSink() {
+    this(new FileOutputStream(FileDescriptor.out));
+  }
+
+  /**
+   * Constructor to write to the given stream
+   *
+   * @param output
+   */
+  public ConsoleSink(OutputStream output) {
+    this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public OutputSink print(CharSequence text) {
+    try {
+      writer.append(text);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  @Override
+  public void flush() {
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
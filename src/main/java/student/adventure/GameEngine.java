@@ -1,49 +1,78 @@
 package student.adventure;
 
-import java.util.Map;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
 import student.adventure.Objects.Configuration;
 import student.adventure.Objects.Direction;
 import student.adventure.Objects.Item;
 import student.adventure.Objects.Room;
+import student.adventure.Objects.RoomType;
 
 public class GameEngine {
 
-  private Map<String, Room> rooms;
-  private Configuration configuration;
-  private Room currentRoom;
+  // Time spent in each action, across every game
+  private static final LatencyHistogram CHANGE_DIRECTION = histogram("changeDirection");
+  private static final LatencyHistogram TAKE_ITEM = histogram("takeItem");
+  private static final LatencyHistogram DROP_ITEM = histogram("dropItem");
+  private static final LatencyHistogram INSPECT_ITEM = histogram("inspectItem");
+  private static final LatencyHistogram SELL_ITEM = histogram("sellItem");
+  private static final LatencyHistogram BUY_ITEM = histogram("buyItem");
+  private static final LatencyHistogram ROUTE = histogram("route");
+  private static final LatencyHistogram SAVE = histogram("save");
+  private static final LatencyHistogram LOAD = histogram("load");
+  private static final LatencyHistogram GET_MONEY = histogram("getMoney");
+  private static final LatencyHistogram QUIT = histogram("quit");
+
+  private World world;
+  private WorldState worldState;
+  private int currentRoom;
   private Player player;
+  private boolean finished;
+  private long changes;
+  private Path saveDirectory = SaveGame.DIRECTORY;
 
   /**
-   * Constructor to instantiate the Game Engine
+   * Constructor to instantiate the Game Engine on a shared world
    *
-   * @param rooms
-   * @param configuration
+   * @param world
    */
-  GameEngine(Map<String, Room> rooms, Configuration configuration) {
-    this.rooms = rooms;
-    this.configuration = configuration;
-    this.player = new Player();
-
-    // Load starting room based on Game Configuration
-    String currentRoomKey = configuration.getStartingRoom();
-    this.currentRoom = rooms.get(currentRoomKey);
+  GameEngine(World world) {
+    this(world, world.getConfiguration().getStartingRoom());
   }
 
   /**
    * Constructor to instantiate the Game Engine with the specified starting room for testing
    * purposes
    *
-   * @param rooms
-   * @param configuration
+   * @param world
    * @param startingRoom
    */
-  GameEngine(Map<String, Room> rooms, Configuration configuration, String startingRoom) {
-    this.rooms = rooms;
-    this.configuration = configuration;
-    this.player = new Player();
+  GameEngine(World world, String startingRoom) {
+    this(world, startingRoom, new WorldState(world));
+  }
+
+  /**
+   * Constructor to instantiate the Game Engine on a world whose changes are kept in the given
+   * state, e.g. a SharedWorldState other players change too
+   *
+   * @param world
+   * @param worldState
+   */
+  GameEngine(World world, WorldState worldState) {
+    this(world, world.getConfiguration().getStartingRoom(), worldState);
+  }
+
+  private GameEngine(World world, String startingRoom, WorldState worldState) {
+    this.world = world;
+    this.worldState = worldState;
+    this.player = new Player(world);
 
     // Manually load given room for testing purposes
-    this.currentRoom = rooms.get(startingRoom);
+    this.currentRoom = world.getRoomId(startingRoom);
   }
 
   /**
@@ -52,34 +81,38 @@ public class GameEngine {
    * @param argument
    * @return
    */
-  public Result changeDirection(String argument) {
-    Direction direction;
-    // Check if the user inputted an actual cardinal direction
+  public Result changeDirection(CharSequence argument) {
+    long start = System.nanoTime();
     try {
-      direction = Direction.valueOf(argument.toUpperCase());
-    } catch (IllegalArgumentException e) {
-      return new Result("You can't go \"" + argument + "\"!", State.FAILURE);
-    }
-    // Check if this room has a route in the given direction
-    if (currentRoom.getDirections().containsKey(direction.getKey())) {
-      String roomKey = currentRoom.getDirections().get(direction.getKey());
-
-      // Check if player meets requirements to enter this room
-      String missingRequirements = Helper.getMissingRequirements(roomKey, this);
-      if (missingRequirements != null) {
-        return new Result("You need the following items to enter this room: " + missingRequirements,
-            State.FAILURE);
+      // Check if the user inputted an actual cardinal direction
+      Direction direction = Direction.fromString(argument);
+      if (direction == null) {
+        return Result.of(Outcome.NO_SUCH_DIRECTION, argument);
       }
+      // Check if this room has a route in the given direction
+      int nextRoom = world.getExit(currentRoom, direction);
+      if (nextRoom != World.NO_ROOM) {
+        // Check if player meets requirements to enter this room
+        String missingRequirements = Helper.getMissingRequirements(nextRoom, this);
+        if (missingRequirements != null) {
+          return Result.of(Outcome.MISSING_REQUIREMENTS, missingRequirements);
+        }
 
-      // Update room state and check if victorious
-      this.currentRoom = rooms.get(roomKey);;
-      if (currentRoom.getType().equals("win")) {
-        return new Result(currentRoom.getDescription(), State.VICTORY);
+        // Update room state and check if victorious
+        this.currentRoom = nextRoom;
+        changes++;
+        world.getRoomVisits().increment(nextRoom);
+        if (world.getType(currentRoom) == RoomType.WIN) {
+          this.finished = true;
+          return Result.of(Outcome.WON, world.getDescription(currentRoom));
+        }
+        return Result.of(Outcome.MOVED);
       }
-      return new Result("", State.SUCCESS);
+      // The direction the user gave is invalid
+      return Result.of(Outcome.NO_SUCH_DIRECTION, direction.getKey());
+    } finally {
+      CHANGE_DIRECTION.recordSince(start);
     }
-    // The direction the user gave is invalid
-    return new Result("You can't go \"" + direction.getKey() + "\"!", State.FAILURE);
   }
 
   /**
@@ -88,12 +121,17 @@ public class GameEngine {
    * @param argument
    * @return
    */
-  public Result takeItem(String argument) {
-    if (currentRoom.getType().equals("store")) {
-      return new Result("You must purchase this item!", State.FAILURE);
-    }
+  public Result takeItem(CharSequence argument) {
+    long start = System.nanoTime();
+    try {
+      if (world.getType(currentRoom) == RoomType.STORE) {
+        return Result.of(Outcome.MUST_PURCHASE);
+      }
 
-    return this.player.getInventory().takeItem(argument, currentRoom);
+      return changed(this.player.getInventory().takeItem(argument, currentRoom, worldState));
+    } finally {
+      TAKE_ITEM.recordSince(start);
+    }
   }
 
   /**
@@ -102,12 +140,17 @@ public class GameEngine {
    * @param argument
    * @return
    */
-  public Result dropItem(String argument) {
-    if (currentRoom.getType().equals("store")) {
-      return new Result("You can't drop this item here!", State.FAILURE);
-    }
+  public Result dropItem(CharSequence argument) {
+    long start = System.nanoTime();
+    try {
+      if (world.getType(currentRoom) == RoomType.STORE) {
+        return Result.of(Outcome.CANNOT_DROP_IN_STORE);
+      }
 
-    return this.player.getInventory().dropItem(argument, currentRoom);
+      return changed(this.player.getInventory().dropItem(argument, currentRoom, worldState));
+    } finally {
+      DROP_ITEM.recordSince(start);
+    }
   }
 
   /**
@@ -116,8 +159,13 @@ public class GameEngine {
    * @param argument
    * @return
    */
-  public Result inspectItem(String argument) {
-    return this.player.getInventory().inspectItem(argument);
+  public Result inspectItem(CharSequence argument) {
+    long start = System.nanoTime();
+    try {
+      return this.player.getInventory().inspectItem(argument);
+    } finally {
+      INSPECT_ITEM.recordSince(start);
+    }
   }
 
   /**
@@ -126,87 +174,311 @@ public class GameEngine {
    * @param argument
    * @return
    */
-  public Result sellItem(String argument) {
-    // Check if current room is of type 'store'
-    if (!currentRoom.getType().equals("store")) {
-      return new Result("You must be a in a store to sell items!", State.FAILURE);
-    }
+  public Result sellItem(CharSequence argument) {
+    long start = System.nanoTime();
+    try {
+      // Check if current room is of type 'store'
+      if (world.getType(currentRoom) != RoomType.STORE) {
+        return Result.of(Outcome.SELL_OUTSIDE_STORE);
+      }
+
+      // Check if player has this item
+      Item toSell = player.getInventory().getItem(argument);
+      if (toSell == null) {
+        return Result.of(Outcome.NOT_IN_INVENTORY, argument);
+      }
+
+      // "Drop" item into store and pay the Player in one step, so no other player in a shared
+      // world sees the store holding the item before it is paid for
+      synchronized (worldState.lock(currentRoom)) {
+        Result dropped = player.getInventory().dropItem(argument, currentRoom, worldState);
+        if (dropped.getState() == State.FAILURE) {
+          return dropped;
+        }
+        player.addMoney(toSell.getValue());
+      }
 
-    // Check if player has this item
-    if (!player.getInventory().hasItem(argument)) {
-      return new Result("You do not have \"" + argument + "\" in your inventory!", State.FAILURE);
+      changes++;
+      return Result.of(Outcome.TRANSACTION_SUCCESSFUL);
+    } finally {
+      SELL_ITEM.recordSince(start);
     }
+  }
 
-    // Give money to Player
-    Item toSell = player.getInventory().getItem(argument);
-    player.addMoney(toSell.getValue());
+  /**
+   * Purchases the item from the store into the Player's inventory
+   *
+   * @param argument
+   * @return
+   */
+  public Result buyItem(CharSequence argument) {
+    long start = System.nanoTime();
+    try {
+      // Check if current room is of type 'store'
+      if (world.getType(currentRoom) != RoomType.STORE) {
+        return Result.of(Outcome.BUY_OUTSIDE_STORE);
+      }
 
-    // "Drop" item into store
-    this.player.getInventory().dropItem(toSell.getName(), currentRoom);
+      int itemId = world.getItemId(argument);
+      if (itemId == World.NO_ITEM) {
+        return Result.of(Outcome.NOT_FOR_SALE, argument);
+      }
+
+      // Check the stock, take the money and hand the item over in one step, so in a shared world
+      // exactly one of the players racing for an item gets it and the rest are never charged
+      synchronized (worldState.lock(currentRoom)) {
+        // Check if store has this item in stock
+        if (!worldState.hasItem(currentRoom, itemId)) {
+          return Result.of(Outcome.NOT_FOR_SALE, argument);
+        }
+        if (!player.spend(world.getItem(itemId).getValue())) {
+          return Result.of(Outcome.NOT_ENOUGH_MONEY);
+        }
+        worldState.removeItem(currentRoom, itemId);
+
+        // "Give" item to Player's inventory
+        player.getInventory().add(itemId);
+      }
 
-    return new Result("Transaction successful!", State.SUCCESS);
+      changes++;
+      return Result.of(Outcome.TRANSACTION_SUCCESSFUL);
+    } finally {
+      BUY_ITEM.recordSince(start);
+    }
   }
 
   /**
-   * Purchases the item from the store into the Player's inventory
+   * Returns a Result listing the shortest way to the named room through rooms the player can
+   * enter with what they carry
    *
    * @param argument
    * @return
    */
-  public Result buyItem(String argument) {
-    // Check if current room is of type 'store'
-    if (!currentRoom.getType().equals("store")) {
-      return new Result("You must be a in a store to buy items!", State.FAILURE);
+  public Result route(CharSequence argument) {
+    long start = System.nanoTime();
+    try {
+      // Check if the room exists
+      int roomId = world.getRoutes().findRoom(argument);
+      if (roomId == World.NO_ROOM) {
+        return Result.of(Outcome.NO_SUCH_ROOM, argument);
+      }
+      String roomKey = world.getRoomKey(roomId);
+      if (roomId == currentRoom) {
+        return Result.of(Outcome.ALREADY_THERE, roomKey);
+      }
+
+      // Check if there is a way there with the player's inventory
+      Direction[] route = findRoute(roomId);
+      if (route == null) {
+        return Result.of(Outcome.NO_ROUTE, roomKey);
+      }
+      return Result.of(Outcome.ROUTE, roomKey, route);
+    } finally {
+      ROUTE.recordSince(start);
     }
+  }
 
-    // Check if store has this item in stock
-    if (!currentRoom.getItems().containsKey(argument.toLowerCase())) {
-      return new Result("\"" + argument + "\" is not for sale!", State.FAILURE);
+  /**
+   * Returns the directions of the shortest way from the current room to the given room, or null
+   * if the player cannot get there with their inventory
+   *
+   * @param roomId
+   * @return
+   */
+  Direction[] findRoute(int roomId) {
+    return world.getRoutes().route(currentRoom, roomId, player.getInventory());
+  }
+
+  /**
+   * Returns a Result including the Player's current money
+   *
+   * @return
+   */
+  public Result getMoney() {
+    long start = System.nanoTime();
+    try {
+      return Result.of(Outcome.MONEY, player.getMoney());
+    } finally {
+      GET_MONEY.recordSince(start);
     }
+  }
 
-    // Check if enough money and take money from Player
-    Item toBuy = currentRoom.getItems().get(argument.toLowerCase());
-    if (player.getMoney() < toBuy.getValue()) {
-      return new Result("You don't have enough money!", State.FAILURE);
+  /**
+   * Ends the game, e.g. when the player exits or quits
+   *
+   * @return
+   */
+  public Result quit() {
+    long start = System.nanoTime();
+    try {
+      this.finished = true;
+      changes++;
+      return Result.of(Outcome.QUIT);
+    } finally {
+      QUIT.recordSince(start);
     }
-    player.subtractMoney(toBuy.getValue());
+  }
 
-    // "Give" item to Player's inventory
-    this.player.getInventory().takeItem(argument, currentRoom);
+  /**
+   * Returns whether the game has ended
+   *
+   * @return
+   */
+  public boolean isFinished() {
+    return finished;
+  }
 
-    return new Result("Transaction successful!", State.SUCCESS);
+  /**
+   * Returns the result of saving the game under the given name, or the default name if none is
+   * given
+   *
+   * @param argument
+   * @return
+   */
+  public Result save(CharSequence argument) {
+    long start = System.nanoTime();
+    try {
+      if (worldState.isShared()) {
+        return Result.of(Outcome.SHARED_WORLD);
+      }
+      String name = argument.length() == 0 ? SaveGame.DEFAULT_NAME : argument.toString();
+      Path file = SaveGame.file(saveDirectory, name);
+      if (file == null) {
+        return Result.of(Outcome.INVALID_SAVE_NAME, name);
+      }
+      try {
+        Files.createDirectories(saveDirectory);
+        Files.write(file, SaveGame.save(this));
+      } catch (IOException e) {
+        return Result.of(Outcome.SAVE_FAILED, e.getMessage());
+      }
+      return Result.of(Outcome.SAVED, name);
+    } finally {
+      SAVE.recordSince(start);
+    }
   }
 
   /**
-   * Returns a Result including the Player's current money
+   * Returns the result of loading the game saved under the given name, or the default name if
+   * none is given
    *
+   * @param argument
    * @return
    */
-  public Result getMoney() {
-    return new Result("You have $" + player.getMoney() + ".", State.SUCCESS);
+  public Result load(CharSequence argument) {
+    long start = System.nanoTime();
+    try {
+      if (worldState.isShared()) {
+        return Result.of(Outcome.SHARED_WORLD);
+      }
+      String name = argument.length() == 0 ? SaveGame.DEFAULT_NAME : argument.toString();
+      Path file = SaveGame.file(saveDirectory, name);
+      if (file == null || !Files.exists(file)) {
+        return Result.of(Outcome.NO_SUCH_SAVE, name);
+      }
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(file)))) {
+        SaveGame.read(in, this);
+      } catch (IOException e) {
+        return Result.of(Outcome.LOAD_FAILED, e.getMessage());
+      }
+      return Result.of(Outcome.LOADED);
+    } finally {
+      LOAD.recordSince(start);
+    }
+  }
+
+  /**
+   * Replaces the whole state of the game, e.g. with a saved game
+   *
+   * @param roomId
+   * @param finished
+   * @param player
+   * @param worldState
+   */
+  void restore(int roomId, boolean finished, Player player, WorldState worldState) {
+    this.currentRoom = roomId;
+    this.finished = finished;
+    this.player = player;
+    this.worldState = worldState;
+    changes++;
+  }
+
+  /**
+   * Returns how many times the game has changed, so callers can tell the commands that changed
+   * it from those that only looked at it or saved it
+   *
+   * @return
+   */
+  long getChanges() {
+    return changes;
+  }
+
+  /**
+   * Counts a change if the given result of an action is not a failure, and returns it
+   */
+  private Result changed(Result result) {
+    if (result.getState() != State.FAILURE) {
+      changes++;
+    }
+    return result;
   }
 
   /**
    * Teleports the player to a given room for testing purposes
    */
   public void teleport(String roomKey) {
-    Room room = rooms.get(roomKey);
-    this.currentRoom = room;
+    this.currentRoom = world.getRoomId(roomKey);
+    changes++;
   }
 
-  public Map<String, Room> getRooms() {
-    return rooms;
+  public Configuration getConfiguration() {
+    return world.getConfiguration();
   }
 
-  public Configuration getConfiguration() {
-    return configuration;
+  /**
+   * Returns the items currently in the player's room
+   *
+   * @return
+   */
+  public Collection<Item> getRoomItems() {
+    return worldState.getItems(currentRoom);
+  }
+
+  public World getWorld() {
+    return world;
+  }
+
+  Path getSaveDirectory() {
+    return saveDirectory;
+  }
+
+  /**
+   * Keeps the games this engine saves and loads in the given directory instead of the default one
+   *
+   * @param saveDirectory
+   */
+  void setSaveDirectory(Path saveDirectory) {
+    this.saveDirectory = saveDirectory;
+  }
+
+  public WorldState getWorldState() {
+    return worldState;
   }
 
   public Room getCurrentRoom() {
+    return world.getRoom(currentRoom);
+  }
+
+  public int getCurrentRoomId() {
     return currentRoom;
   }
 
   public Player getPlayer() {
     return this.player;
   }
+
+  private static LatencyHistogram histogram(String method) {
+    return Metrics.histogram("GameEngine." + method);
+  }
 }
@@ -0,0 +1,207 @@
+package student.adventure;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * REST endpoints for playing games over HTTP. Every game action returns its Result as JSON.
+ */
+@Path("sessions")
+@Produces(MediaType.APPLICATION_JSON)
+public class GameResource {
+
+  static final int MAX_BATCH = 10000;
+
+  private final SessionManager sessions;
+
+  /**
+   * Constructor to serve the sessions of the given manager
+   *
+   * @param sessions
+   */
+  @Inject
+  public GameResource(SessionManager sessions) {
+    this.sessions = sessions;
+  }
+
+  /**
+   * Starts a new session and returns its id along with the starting room
+   *
+   * @return
+   */
+  @POST
+  public Map<String, Object> create() {
+    Session session = sessions.create();
+
+    Map<String, Object> created = new LinkedHashMap<>();
+    created.put("id", session.getId());
+    created.put("result", session.examine());
+    return created;
+  }
+
+  /**
+   * Returns the details of the session's current room
+   *
+   * @param id
+   * @return
+   */
+  @GET
+  @Path("{id}")
+  public Result examine(@PathParam("id") String id) {
+    return find(id).examine();
+  }
+
+  /**
+   * Returns the shortest way from the session's current room to the named room, through rooms
+   * the player can enter with what they carry
+   *
+   * @param id
+   * @param room
+   * @return
+   */
+  @GET
+  @Path("{id}/routes/{room}")
+  public Session.Route route(@PathParam("id") String id, @PathParam("room") String room) {
+    Session.Route route = find(id).route(room);
+    if (route == null) {
+      throw new NotFoundException("No room \"" + room + "\"");
+    }
+    return route;
+  }
+
+  /**
+   * Returns the session's game in the binary saved game format
+   *
+   * @param id
+   * @return
+   */
+  @GET
+  @Path("{id}/state")
+  @Produces(MediaType.APPLICATION_OCTET_STREAM)
+  public byte[] save(@PathParam("id") String id) {
+    Session session = find(id);
+    if (sessions.isShared()) {
+      throw new ClientErrorException("Games in a shared world cannot be saved",
+          Response.Status.CONFLICT);
+    }
+    return session.save();
+  }
+
+  /**
+   * Replaces the session's game with a saved one and returns the details of its room
+   *
+   * @param id
+   * @param save
+   * @return
+   */
+  @PUT
+  @Path("{id}/state")
+  @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+  public Result load(@PathParam("id") String id, byte[] save) {
+    return find(id).load(save);
+  }
+
+  /**
+   * Ends the given session
+   *
+   * @param id
+   */
+  @DELETE
+  @Path("{id}")
+  public void end(@PathParam("id") String id) {
+    if (sessions.remove(id) == null) {
+      throw new NotFoundException("No session \"" + id + "\"");
+    }
+  }
+
+  /**
+   * Performs an action that takes no argument, e.g. "examine"
+   *
+   * @param id
+   * @param action
+   * @return
+   */
+  @POST
+  @Path("{id}/{action}")
+  public Result perform(@PathParam("id") String id, @PathParam("action") String action) {
+    return perform(id, action, "");
+  }
+
+  /**
+   * Performs an action with an argument, e.g. "go" "north" or "take" "dining hall key"
+   *
+   * @param id
+   * @param action
+   * @param argument
+   * @return
+   */
+  @POST
+  @Path("{id}/{action}/{argument}")
+  public Result perform(@PathParam("id") String id, @PathParam("action") String action,
+      @PathParam("argument") String argument) {
+    Session session = find(id);
+    if (!CommandParser.isAction(action)) {
+      throw new NotFoundException("No action \"" + action + "\"");
+    }
+    return session.perform(action, argument);
+  }
+
+  /**
+   * Performs a list of command lines in order, e.g. ["go north", "take lamp"], and returns the
+   * Result of each. Optionally stops at the first failure or at victory, in which case fewer
+   * Results than commands are returned. Batches for different sessions run in parallel.
+   *
+   * @param id
+   * @param commands
+   * @param stopOnFailure
+   * @param stopOnVictory
+   * @return
+   */
+  @POST
+  @Path("{id}/batch")
+  @Consumes(MediaType.APPLICATION_JSON)
+  public List<Result> performAll(@PathParam("id") String id, List<String> commands,
+      @QueryParam("stopOnFailure") boolean stopOnFailure,
+      @QueryParam("stopOnVictory") boolean stopOnVictory) {
+    Session session = find(id);
+    if (commands == null || commands.isEmpty() || commands.size() > MAX_BATCH) {
+      throw new BadRequestException("A batch holds 1 to " + MAX_BATCH + " commands");
+    }
+    for (String command : commands) {
+      if (command == null) {
+        throw new BadRequestException("Commands must be strings");
+      }
+    }
+    return session.performAll(commands, stopOnFailure, stopOnVictory);
+  }
+
+  /**
+   * Returns the session with the given id
+   *
+   * @param id
+   * @return
+   */
+  private Session find(String id) {
+    Session session = sessions.get(id);
+    if (session == null) {
+      throw new NotFoundException("No session \"" + id + "\"");
+    }
+    return session;
+  }
+}
@@ -0,0 +1,87 @@
+package student.adventure;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.websockets.WebSocketAddOn;
+import org.glassfish.jersey.internal.inject.AbstractBinder;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.server.ResourceConfig;
+
+/**
+ * Hosts many concurrent games of one world over HTTP, and over WebSocket at /play for clients
+ * that keep one connection open for a whole game
+ */
+public class GameServer {
+
+  public static final URI DEFAULT_URI = URI.create("http://0.0.0.0:8080/");
+
+  /**
+   * Starts a server for the given world at the given base URI
+   *
+   * @param uri
+   * @param worldPath
+   * @return the running server
+   * @throws IOException if the world cannot be loaded
+   */
+  public static HttpServer start(URI uri, Path worldPath) throws IOException {
+    return start(uri, new SessionManager(worldPath));
+  }
+
+  /**
+   * Starts a server for the given sessions at the given base URI, and publishes metrics of its
+   * world over JMX
+   *
+   * @param uri
+   * @param sessions
+   * @return the running server
+   * @throws IOException if the server cannot listen at the URI
+   */
+  public static HttpServer start(URI uri, final SessionManager sessions) throws IOException {
+    Metrics.register(sessions.getWorld());
+    ResourceConfig config = new ResourceConfig()
+        .register(JacksonFeature.class)
+        .register(GameResource.class)
+        .register(MetricsResource.class)
+        .register(new AbstractBinder() {
+          @Override
+          protected void configure() {
+            bind(sessions).to(SessionManager.class);
+          }
+        });
+    HttpServer server = GrizzlyHttpServerFactory.createHttpServer(uri, config, false);
+    for (NetworkListener listener : server.getListeners()) {
+      listener.registerAddOn(new WebSocketAddOn());
+    }
+    server.start();
+    for (NetworkListener listener : server.getListeners()) {
+      PlayApplication.serve(listener.getPort(), sessions);
+    }
+    return server;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Path path = Paths.get(args.length > 0 ? args[0] : "src/main/java/data/data.json");
+
+    // Sessions are journaled, and recovered on start, only when given a journal directory.
+    // Otherwise -Dadventure.shared=true puts every session into one shared world.
+    final SessionManager sessions = args.length > 1
+        ? new SessionManager(path, Paths.get(args[1]))
+        : new SessionManager(path, Boolean.getBoolean("adventure.shared"));
+    final HttpServer server = start(DEFAULT_URI, sessions);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      server.shutdownNow();
+      try {
+        sessions.close();
+      } catch (IOException e) {
+        System.err.println("Could not close the journal: " + e.getMessage());
+      }
+    }));
+    System.out.println("Adventure server running at " + DEFAULT_URI);
+    Thread.currentThread().join();
+  }
+}
@@ -0,0 +1,147 @@
+package student.adventure;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import student.adventure.Objects.Configuration;
+import student.adventure.Objects.Direction;
+import student.adventure.Objects.Item;
+import student.adventure.Objects.Room;
+import student.adventure.Objects.RoomType;
+
+/**
+ * World held entirely in memory, as compiled from JSON by a WorldBuilder. Exits are stored in one
+ * flat array indexed by room id and Direction ordinal, so movement needs no hashing or allocation.
+ * Rooms are kept as columns of their fields and only assembled when asked for.
+ */
+class HeapWorld extends World {
+
+  private final Map<String, Integer> roomIds;
+  private final String[] roomKeys;
+  private final String[] names;
+  private final String[] descriptions;
+  private final String[] typeNames;
+  private final RoomType[] types;
+  private final int[] exits;
+  private final String[][] directionKeys;
+  private final int[][] directionRooms;
+  private final NameIndex itemIndex;
+  private final String[] itemNames;
+  private final Item[] items;
+  private final String[] itemKeys;
+  private final int[][] roomItems;
+  private final String[][] requirementNames;
+  private final long[][] requirements;
+
+  /**
+   * Constructor to wrap compiled world tables; see WorldBuilder
+   */
+  HeapWorld(Configuration configuration, Map<String, Integer> roomIds, String[] roomKeys,
+      String[] names, String[] descriptions, String[] typeNames, RoomType[] types, int[] exits,
+      String[][] directionKeys, int[][] directionRooms, String[] itemNames, Item[] items,
+      String[] itemKeys, int[][] roomItems, String[][] requirementNames, long[][] requirements) {
+    super(configuration);
+    this.roomIds = roomIds;
+    this.roomKeys = roomKeys;
+    this.names = names;
+    this.descriptions = descriptions;
+    this.typeNames = typeNames;
+    this.types = types;
+    this.exits = exits;
+    this.directionKeys = directionKeys;
+    this.directionRooms = directionRooms;
+    this.itemIndex = new NameIndex(Arrays.asList(itemNames));
+    this.itemNames = itemNames;
+    this.items = items;
+    this.itemKeys = itemKeys;
+    this.roomItems = roomItems;
+    this.requirementNames = requirementNames;
+    this.requirements = requirements;
+  }
+
+  @Override
+  public int getRoomId(String roomKey) {
+    Integer id = roomIds.get(roomKey);
+    return id == null ? NO_ROOM : id;
+  }
+
+  @Override
+  public String getRoomKey(int roomId) {
+    return roomKeys[roomId];
+  }
+
+  @Override
+  public int getRoomCount() {
+    return roomKeys.length;
+  }
+
+  @Override
+  public int getExit(int roomId, Direction direction) {
+    return exits[roomId * Direction.count() + direction.ordinal()];
+  }
+
+  @Override
+  public RoomType getType(int roomId) {
+    return types[roomId];
+  }
+
+  @Override
+  public Room getRoom(int roomId) {
+    Map<String, Item> startingItems = new LinkedHashMap<>();
+    for (int itemId : roomItems[roomId]) {
+      startingItems.put(itemKeys[itemId], items[itemId]);
+    }
+    Map<String, String> directions = new LinkedHashMap<>();
+    for (int d = 0; d < directionKeys[roomId].length; d++) {
+      directions.put(directionKeys[roomId][d], roomKeys[directionRooms[roomId][d]]);
+    }
+    return new Room(names[roomId], descriptions[roomId], typeNames[roomId], startingItems,
+        directions, requirementNames[roomId].clone());
+  }
+
+  @Override
+  public String getDescription(int roomId) {
+    return descriptions[roomId];
+  }
+
+  @Override
+  public int getItemId(CharSequence name) {
+    return itemIndex.get(name);
+  }
+
+  @Override
+  public Item getItem(int itemId) {
+    return items[itemId];
+  }
+
+  @Override
+  public String getItemName(int itemId) {
+    return itemNames[itemId];
+  }
+
+  @Override
+  public int getItemCount() {
+    return items.length;
+  }
+
+  @Override
+  public int[] getRoomItems(int roomId) {
+    return roomItems[roomId];
+  }
+
+  @Override
+  public boolean hasItem(int roomId, int itemId) {
+    return Arrays.binarySearch(roomItems[roomId], itemId) >= 0;
+  }
+
+  @Override
+  public boolean meetsRequirements(int roomId, Inventory inventory) {
+    long[] mask = requirements[roomId];
+    for (int i = 0; i < mask.length; i += 2) {
+      if (!inventory.containsAll((int) mask[i], mask[i + 1])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -2,10 +2,14 @@ package student.adventure;
 
 import java.util.Collection;
 import student.adventure.Objects.Item;
-import student.adventure.Objects.Room;
+import student.adventure.Objects.RoomType;
 
 public class Helper {
 
+  // Rendering is done into one builder per thread, which keeps its capacity between commands
+  private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(
+      StringBuilder::new);
+
   /**
    * Converts a list to a pretty-print String for I/O
    *
@@ -13,47 +17,110 @@ public class Helper {
    * @return String
    */
   public static String buildStringFromList(StringList type, GameEngine engine) {
-    String stringList = "From here, you can go: ";
-
+    StringBuilder buffer = buffer();
+    int roomId = engine.getCurrentRoomId();
     if (type == StringList.ITEMS) {
-      stringList = "Items visible: ";
-      if (engine.getCurrentRoom().getType().equals("store")) {
-        stringList = "Items for sale: ";
-      }
-      String list = commaSeparateItemList(engine.getCurrentRoom().getItems().values());
-      if (list.length() == 0) {
-        return "There are no items here.";
-      }
-      stringList += list;
+      appendItems(buffer, engine.getWorld().getType(roomId), engine.getRoomItems());
     } else if (type == StringList.INVENTORY) {
-      stringList = "You have: ";
-      String list = commaSeparateItemList(engine.getPlayer().getInventory().getInventorySet());
-      if (list.length() == 0) {
+      Collection<Item> inventory = engine.getPlayer().getInventory().getInventorySet();
+      if (inventory.isEmpty()) {
         return "You currently have no items.";
       }
-      stringList += list;
+      appendItemList(buffer.append("You have: "), inventory);
     } else {
-      for (String key : engine.getCurrentRoom().getDirections().keySet()) {
-        stringList += key + ", ";
-      }
+      appendDirections(buffer, engine.getWorld(), roomId);
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Describes the current room: its description, the directions out of it and its items. The view
+   * is only rendered again after the room's items change.
+   *
+   * @param engine
+   * @return
+   */
+  public static String describeRoom(GameEngine engine) {
+    return engine.getWorldState().describe(engine.getCurrentRoomId());
+  }
+
+  /**
+   * Renders the given room holding the given items
+   *
+   * @param world
+   * @param roomId
+   * @param items
+   * @return
+   */
+  static String renderRoom(World world, int roomId, Collection<Item> items) {
+    StringBuilder buffer = buffer();
+    buffer.append(world.getDescription(roomId)).append('\n');
+    appendDirections(buffer, world, roomId);
+    buffer.append('\n');
+    appendItems(buffer, world.getType(roomId), items);
+    return buffer.toString();
+  }
+
+  private static StringBuilder buffer() {
+    StringBuilder buffer = BUFFER.get();
+    buffer.setLength(0);
+    return buffer;
+  }
+
+  private static void appendDirections(StringBuilder buffer, World world, int roomId) {
+    buffer.append("From here, you can go: ");
+    for (String key : world.getRoom(roomId).getDirections().keySet()) {
+      buffer.append(key).append(", ");
     }
 
     // Cut off the last two characters because of extra comma
-    return stringList.substring(0, stringList.length() - 2);
+    buffer.setLength(buffer.length() - 2);
+  }
+
+  private static void appendItems(StringBuilder buffer, RoomType type, Collection<Item> items) {
+    if (items.isEmpty()) {
+      buffer.append("There are no items here.");
+      return;
+    }
+    buffer.append(type == RoomType.STORE ? "Items for sale: " : "Items visible: ");
+    appendItemList(buffer, items);
   }
 
   /**
    * Separates a list of Item objects by commas and includes name and price of item
    *
+   * @param buffer
    * @param collection
-   * @return
    */
-  private static String commaSeparateItemList(Collection<Item> collection) {
-    String res = "";
+  private static void appendItemList(StringBuilder buffer, Collection<Item> collection) {
     for (Item key : collection) {
-      res += key.getName() + " - $" + key.getValue() + ", ";
+      appendMoney(buffer.append(key.getName()).append(" - "), key.getValue()).append(", ");
+    }
+
+    // Cut off the last two characters because of extra comma
+    buffer.setLength(buffer.length() - 2);
+  }
+
+  /**
+   * Appends an amount of cents in dollars, e.g. $12.5 or $12.05, with as few decimals as show the
+   * cents exactly
+   *
+   * @param buffer
+   * @param cents
+   * @return the buffer
+   */
+  static StringBuilder appendMoney(StringBuilder buffer, long cents) {
+    if (cents < 0) {
+      buffer.append('-');
+    }
+    // Negating Long.MIN_VALUE overflows, so split off the digits while still negative
+    long dollars = Math.abs(cents / 100);
+    int fraction = (int) Math.abs(cents % 100);
+    buffer.append('$').append(dollars).append('.');
+    if (fraction % 10 == 0) {
+      return buffer.append(fraction / 10);
     }
-    return res;
+    return buffer.append(fraction < 10 ? "0" : "").append(fraction);
   }
 
   /**
@@ -64,23 +131,36 @@ public class Helper {
    * @return
    */
   public static String getMissingRequirements(String roomKey, GameEngine engine) {
-    Room room = engine.getRooms().get(roomKey);
-    String missingRequirements = null;
-
-    // Iterate through all requirements and add to list if player does not meet
-    for (String req : room.getRequirements()) {
-      if (!engine.getPlayer().getInventory().hasItem(req.toLowerCase())) {
-        if (missingRequirements == null) {
-          missingRequirements = req + ", ";
-        }
-      }
+    return getMissingRequirements(engine.getWorld().getRoomId(roomKey), engine);
+  }
+
+  /**
+   * Returns a list of items the player must obtain to enter the room with the given id Returns
+   * null if player meets all requirements
+   *
+   * @param roomId
+   * @return
+   */
+  public static String getMissingRequirements(int roomId, GameEngine engine) {
+    World world = engine.getWorld();
+    Inventory inventory = engine.getPlayer().getInventory();
+
+    // Compare the inventory against the room's compiled requirement mask
+    if (world.meetsRequirements(roomId, inventory)) {
+      return null;
     }
 
-    // Take substring due to extra comma at end
-    if (missingRequirements != null) {
-      return missingRequirements.substring(0, missingRequirements.length() - 2);
+    // Only build the list once we know the player is missing something
+    StringBuilder missingRequirements = new StringBuilder();
+    for (String req : world.getRoom(roomId).getRequirements()) {
+      if (!inventory.hasItem(world.getItemId(req))) {
+        if (missingRequirements.length() > 0) {
+          missingRequirements.append(", ");
+        }
+        missingRequirements.append(req);
+      }
     }
-    return missingRequirements;
+    return missingRequirements.toString();
   }
 
   /**
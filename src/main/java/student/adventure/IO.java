@@ -1,16 +1,11 @@
 package student.adventure;
 
-import com.google.gson.Gson;
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Map;
 import java.util.Scanner;
-import student.adventure.Objects.Data;
-import student.adventure.Objects.Item;
-import student.adventure.Objects.Room;
+import student.adventure.Objects.Configuration;
 
 /*
  * Enum that specifies what values to separate in pretty print list
@@ -23,11 +18,11 @@ enum StringList {
 
 public class IO {
 
-  protected static GameEngine engine;
-  private static Scanner scanner;
-  private static Map<String, Action> actionMap;
-  private final Gson gson;
-  private Data data;
+  private final World world;
+  private GameEngine engine;
+  private CommandParser parser;
+  private Scanner scanner;
+  private OutputSink out;
 
   /**
    * Constructor to load JSON game data from the given path
@@ -36,116 +31,109 @@ public class IO {
    * @throws IOException
    */
   public IO(Path path) throws IOException {
-    gson = new Gson();
-    scanner = new Scanner(System.in);
-
-    // Read JSON from file
-    Reader reader = Files.newBufferedReader(path);
-    Data data = gson.fromJson(reader, Data.class);
-    sanitizeData(data);
-
-    // Build action HashMap to map String actions to their corresponding functions
-    actionMap = IOHandler.buildActionMap();
+    // Stream and check the JSON from file room by room
+    world = WorldLoader.load(path);
   }
 
   /**
    * Prints out details of the current room
    */
-  protected static void examine() {
-    Map<String, String> directions = engine.getCurrentRoom().getDirections();
-    Map<String, Item> items = engine.getCurrentRoom().getItems();
-
-    // Print room description
-    System.out.println(engine.getCurrentRoom().getDescription());
-
-    // Print directions guide
-    System.out.println(Helper.buildStringFromList(StringList.DIRECTIONS, engine));
-
-    // Print items guide
-    System.out.println(Helper.buildStringFromList(StringList.ITEMS, engine));
-
-    // Prompt user for input
-    prompt();
+  private void examine() {
+    out.println(Helper.describeRoom(engine));
   }
 
   /**
-   * Prompts the user to input a command
+   * Reads, dispatches and renders commands until the player wins, quits or input runs out. Each
+   * command returns to this loop, so the stack depth stays constant for any session length.
+   * Output is flushed once per command, after the next prompt.
    */
-  protected static void prompt() {
-    System.out.print("> ");
-
-    // Collect input
-    String command = scanner.nextLine();
-
-    // Process command
-    dissectCommand(command);
-  }
-
-  /**
-   * Dissects action and arguments from inputted command
-   *
-   * @param command
-   */
-  private static void dissectCommand(String command) {
-    command = command.toLowerCase().trim();
-    // Separate the action from the argument
-    int firstArgIndex = command.indexOf(' ');
-    String action;
-    String argument = "";
-
-    // Handle single word commands
-    if (firstArgIndex == -1) {
-      action = command;
-    } else {
-      action = command.substring(0, firstArgIndex);
-      argument = command.substring(firstArgIndex).trim();
-    }
+  private void run() {
+    while (!engine.isFinished()) {
+      // Prompt user for input
+      out.print("> ");
+      out.flush();
+      if (!scanner.hasNextLine()) {
+        return;
+      }
 
-    // If actionMap contains this action, command is potentially valid (argument may be invalid)
-    if (actionMap.containsKey(action)) {
-      actionMap.get(action).performAction(argument);
-    } else {
-      handleInvalidCommand(command);
+      // Process command and render its outcome
+      Result res = parser.perform(engine, scanner.nextLine());
+      render(res, engine.getConfiguration(), out);
+      if (res.getState() == State.VICTORY) {
+        out.flush();
+        return;
+      }
     }
+    out.flush();
   }
 
   /**
-   * Handles case of invalid command entered by user
+   * Renders the outcome of a command to the given sink: its message if it has one, or the
+   * victory banner if it won the game
    *
-   * @param command
+   * @param res
+   * @param configuration
+   * @param out
    */
-  private static void handleInvalidCommand(String command) {
-    System.out.println("I don't quite understand \"" + command + "\"!");
-    prompt();
+  static void render(Result res, Configuration configuration, OutputSink out) {
+    if (res.getState() == State.VICTORY) {
+      handleVictory(res.getMessage(), configuration, out);
+    } else if (res.getMessage().length() > 0) {
+      out.println(res.getMessage());
+    }
   }
 
   /**
    * Handle player victory
    */
-  protected static void handleVictory(String message) {
+  private static void handleVictory(String message, Configuration configuration,
+      OutputSink out) {
     // Print pretty divider text that matches the length of the message
     char[] dividerText = new char[message.length()];
     Arrays.fill(dividerText, '-');
-    System.out.println(new String(dividerText));
+    out.println(new String(dividerText));
 
     // Print message and victory text
-    System.out.println(message + "\n");
-    System.out.println(engine.getConfiguration().getVictoryText());
-
-    // Gracefully exit
-    System.exit(0);
+    out.println(message).println("");
+    out.println(configuration.getVictoryText());
   }
 
   /**
    * Begins the game with preliminary output
    */
   public void start() {
+    start(System.in);
+  }
+
+  /**
+   * Begins the game reading commands from the given input and printing to the console, returning
+   * once the game is over
+   *
+   * @param input
+   */
+  public void start(InputStream input) {
+    start(input, new ConsoleSink());
+  }
+
+  /**
+   * Begins the game reading commands from the given input and writing to the given sink,
+   * returning once the game is over
+   *
+   * @param input
+   * @param output
+   */
+  public void start(InputStream input, OutputSink output) {
+    scanner = new Scanner(input);
+    parser = new CommandParser();
+    out = output;
+
     // Print out Game information
-    System.out.println(data.getConfiguration().getInitializationText() + "\n");
+    out.println(world.getConfiguration().getInitializationText()).println("");
 
     // Instantiate Game Engine
-    engine = new GameEngine(data.getRooms(), data.getConfiguration());
+    engine = createEngine();
     examine();
+    run();
   }
 
   /**
@@ -154,49 +142,24 @@ public class IO {
    * @param startingRoom
    */
   public void start(String startingRoom) {
-    engine = new GameEngine(data.getRooms(), data.getConfiguration(), startingRoom);
+    engine = new GameEngine(world, startingRoom);
   }
 
   /**
-   * Checks sanity of data, all subfields, and the map itself
+   * Creates a new Game Engine in the configured starting room without any I/O. Every engine shares
+   * this IO's world and keeps its own changes to it.
    *
-   * @param data
+   * @return
    */
-  private void sanitizeData(Data data) {
-    try {
-      // Sanitize game configuration
-      Helper.checkNull(data.getConfiguration().getInitializationText());
-      Helper.checkNull(data.getConfiguration().getVictoryText());
-      Helper.checkNull(data.getConfiguration().getStartingRoom());
-
-      // Sanitize Rooms and Items
-      for (Room room : data.getRooms().values()) {
-        // Check if room has necessary fields
-        Helper.checkNull(room.getDirections());
-        Helper.checkNull(room.getDescription());
-        Helper.checkNull(room.getType());
-        Helper.checkNull(room.getName());
-        Helper.checkNull(room.getRequirements());
-
-        // Check if all directions point to valid rooms
-        for (String roomKey : room.getDirections().values()) {
-          Helper.checkNull(data.getRooms().get(roomKey));
-        }
-        // Check if all items have necessary fields
-        for (Item item : room.getItems().values()) {
-          Helper.checkNull(item.getName());
-          Helper.checkNull(item.getDescription());
-          Helper.checkNull(item.getValue());
-        }
-      }
-      this.data = data;
+  public GameEngine createEngine() {
+    return new GameEngine(world);
+  }
 
-    } catch (Exception e) {
-      throw new IllegalArgumentException("Input JSON has invalid schema / data.");
-    }
+  public World getWorld() {
+    return world;
   }
 
   protected GameEngine getEngine() {
     return this.engine;
   }
-}
\ No newline at end of file
+}
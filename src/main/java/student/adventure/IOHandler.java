@@ -1,216 +1,261 @@
 package student.adventure;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import student.adventure.Objects.Direction;
 
 interface Action {
 
-  void performAction(String argument);
+  /**
+   * Performs this action on the given engine. The argument is only valid during the call.
+   *
+   * @param engine
+   * @param argument lowercase, trimmed argument of the command
+   * @return
+   */
+  Result performAction(GameEngine engine, CharSequence argument);
 }
 
 public class IOHandler {
 
   /**
    * Populates a HashMap that Maps a String action (i.e. "go", "take") to a function that handles
-   * that action
+   * that action. Actions hold no state of their own, so one map can serve every game session.
    */
   protected static Map<String, Action> buildActionMap() {
     HashMap<String, Action> actionMap = new HashMap<>();
     actionMap.put("go", new Action() {
-      public void performAction(String argument) {
-        handleGoAction(argument);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleGoAction(engine, argument);
       }
     });
     actionMap.put("take", new Action() {
-      public void performAction(String argument) {
-        handleTakeAction(argument);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleTakeAction(engine, argument);
       }
     });
     actionMap.put("drop", new Action() {
-      public void performAction(String argument) {
-        handleDropAction(argument);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleDropAction(engine, argument);
       }
     });
     actionMap.put("exit", new Action() {
-      public void performAction(String argument) {
-        System.exit(0);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return engine.quit();
       }
     });
     actionMap.put("quit", new Action() {
-      public void performAction(String argument) {
-        System.exit(0);
-      }
-    });
-    actionMap.put("take", new Action() {
-      public void performAction(String argument) {
-        handleTakeAction(argument);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return engine.quit();
       }
     });
     actionMap.put("inventory", new Action() {
       @Override
-      public void performAction(String argument) {
-        System.out.println(Helper.buildStringFromList(StringList.INVENTORY, IO.engine));
-        IO.prompt();
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return Result.of(Outcome.INVENTORY, Helper.buildStringFromList(StringList.INVENTORY,
+            engine));
       }
     });
     actionMap.put("examine", new Action() {
       @Override
-      public void performAction(String argument) {
-        IO.examine();
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return Result.of(Outcome.ROOM, Helper.describeRoom(engine));
       }
     });
     actionMap.put("inspect", new Action() {
       @Override
-      public void performAction(String argument) {
-        handleInspectAction(argument);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleInspectAction(engine, argument);
       }
     });
     actionMap.put("buy", new Action() {
       @Override
-      public void performAction(String argument) {
-        handleBuyAction(argument);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleBuyAction(engine, argument);
       }
     });
     actionMap.put("sell", new Action() {
       @Override
-      public void performAction(String argument) {
-        handleSellAction(argument);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleSellAction(engine, argument);
       }
     });
     actionMap.put("money", new Action() {
       @Override
-      public void performAction(String argument) {
-        handleMoneyAction(argument);
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleMoneyAction(engine, argument);
       }
     });
+    actionMap.put("save", new Action() {
+      @Override
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return engine.save(argument);
+      }
+    });
+    actionMap.put("load", new Action() {
+      @Override
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleLoadAction(engine, argument);
+      }
+    });
+    actionMap.put("route", new Action() {
+      @Override
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        return handleRouteAction(engine, argument);
+      }
+    });
+
+    // Time every action and count its results
+    for (Map.Entry<String, Action> entry : actionMap.entrySet()) {
+      entry.setValue(Metrics.timed(entry.getKey(), entry.getValue()));
+    }
 
-    return actionMap;
+    return Collections.unmodifiableMap(actionMap);
   }
 
   /**
-   * I/O management to parse and perform "take" action
+   * Compiles every action, its abbreviations and aliases (i.e. "n" for "go north") into a trie
+   */
+  protected static ActionTrie buildActionTrie() {
+    Map<String, Action> actionMap = buildActionMap();
+    ActionTrie trie = new ActionTrie();
+    for (Map.Entry<String, Action> entry : actionMap.entrySet()) {
+      trie.add(entry.getKey(), entry.getValue(), null);
+    }
+
+    // Directions on their own, both spelled out and by initial, mean "go"
+    for (Direction direction : Direction.values()) {
+      String name = direction.getKey().toLowerCase();
+      trie.add(name, actionMap.get("go"), name);
+      trie.add(name.substring(0, 1), actionMap.get("go"), name);
+    }
+    trie.add("get", actionMap.get("take"), null);
+    trie.add("look", actionMap.get("examine"), null);
+    trie.add("l", actionMap.get("examine"), null);
+    trie.add("i", actionMap.get("inventory"), null);
+    trie.add("q", actionMap.get("quit"), null);
+
+    return trie.compile();
+  }
+
+  /**
+   * Parse and perform "take" action
    *
+   * @param engine
    * @param argument
    */
-  private static Result handleTakeAction(String argument) {
-    argument = argument.toLowerCase();
+  private static Result handleTakeAction(GameEngine engine, CharSequence argument) {
 
     // Get response from Game Engine
-    Result res = IO.engine.takeItem(argument);
-    System.out.println(res.getMessage());
-    IO.prompt();
+    return engine.takeItem(argument);
+  }
 
-    return res;
+  /**
+   * Parse and perform "drop" action
+   *
+   * @param engine
+   * @param argument
+   */
+  private static Result handleDropAction(GameEngine engine, CharSequence argument) {
+
+    // Get response from Game Engine, only failures carry a message
+    return engine.dropItem(argument);
   }
 
   /**
-   * I/O management to parse and perform "drop" action
+   * Parse and perform "money" action
    *
+   * @param engine
    * @param argument
+   * @return
    */
-  private static Result handleDropAction(String argument) {
-    argument = argument.toLowerCase();
+  private static Result handleMoneyAction(GameEngine engine, CharSequence argument) {
+    // Get response from Game Engine
+    return engine.getMoney();
+  }
 
+  /**
+   * Parse and perform "load" action
+   *
+   * @param engine
+   * @param argument
+   * @return
+   */
+  private static Result handleLoadAction(GameEngine engine, CharSequence argument) {
     // Get response from Game Engine
-    Result res = IO.engine.dropItem(argument);
-    // We only need to print response message if failure
-    if (res.getState() == State.FAILURE) {
-      System.out.println(res.getMessage());
+    Result res = engine.load(argument);
+    if (res.getState() == State.SUCCESS) {
+      // Examine the room the saved game was in
+      return Result.of(Outcome.ROOM, Helper.describeRoom(engine));
     }
 
-    IO.prompt();
     return res;
   }
 
   /**
-   * I/O management to parse and perform "money" action
+   * Parse and perform "route" action
    *
+   * @param engine
    * @param argument
    * @return
    */
-  private static Result handleMoneyAction(String argument) {
-    argument = argument.toLowerCase();
-
+  private static Result handleRouteAction(GameEngine engine, CharSequence argument) {
     // Get response from Game Engine
-    Result res = IO.engine.getMoney();
-    System.out.println(res.getMessage());
-
-    IO.prompt();
-    return res;
+    return engine.route(argument);
   }
 
   /**
-   * I/O management to parse and perform "go" action
+   * Parse and perform "go" action
    *
+   * @param engine
    * @param argument
    */
-  private static Result handleGoAction(String argument) {
-    argument = argument.toLowerCase();
-
+  private static Result handleGoAction(GameEngine engine, CharSequence argument) {
     // Get response from Game Engine
-    Result res = IO.engine.changeDirection(argument);
-    if (res.getState() == State.FAILURE) {
-      System.out.println(res.getMessage());
-
-    } else if (res.getState() == State.VICTORY) {
-      IO.handleVictory(res.getMessage());
-      return res;
-
-    } else {
-      // Examine the new room
-      IO.examine();
+    Result res = engine.changeDirection(argument);
+    if (res.getState() == State.SUCCESS) {
+      // Examine the new room (victory is rendered by the caller)
+      return Result.of(Outcome.ROOM, Helper.describeRoom(engine));
     }
 
-    IO.prompt();
     return res;
   }
 
   /**
-   * I/O management to parse and perform "inspect" action
+   * Parse and perform "inspect" action
    *
+   * @param engine
    * @param argument
    */
-  private static Result handleInspectAction(String argument) {
-    argument = argument.toLowerCase();
+  private static Result handleInspectAction(GameEngine engine, CharSequence argument) {
 
     // Get response from Game Engine
-    Result res = IO.engine.inspectItem(argument);
-    System.out.println(res.getMessage());
-
-    IO.prompt();
-    return res;
+    return engine.inspectItem(argument);
   }
 
   /**
-   * I/O management to parse and perform "sell" action
+   * Parse and perform "sell" action
    *
+   * @param engine
    * @param argument
    */
-  private static Result handleSellAction(String argument) {
-    argument = argument.toLowerCase();
+  private static Result handleSellAction(GameEngine engine, CharSequence argument) {
 
     // Get response from Game Engine
-    Result res = IO.engine.sellItem(argument);
-    System.out.println(res.getMessage());
-
-    IO.prompt();
-    return res;
+    return engine.sellItem(argument);
   }
 
   /**
-   * I/O management to parse and perform "buy" action
+   * Parse and perform "buy" action
    *
+   * @param engine
    * @param argument
    */
-  private static Result handleBuyAction(String argument) {
-    argument = argument.toLowerCase();
+  private static Result handleBuyAction(GameEngine engine, CharSequence argument) {
 
     // Get response from Game Engine
-    Result res = IO.engine.buyItem(argument);
-    System.out.println(res.getMessage());
-
-    IO.prompt();
-    return res;
+    return engine.buyItem(argument);
   }
 
 }
@@ -0,0 +1,24 @@
+package student.adventure;
+
+/**
+ * Thrown when game data fails validation. The message lists every problem; the report gives them
+ * one by one.
+ */
+public class InvalidWorldException extends IllegalArgumentException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final ValidationReport report;
+
+  InvalidWorldException(ValidationReport report) {
+    super("Input JSON has invalid schema / data: " + report);
+    this.report = report;
+  }
+
+  /**
+   * @return
+   */
+  public ValidationReport getReport() {
+    return report;
+  }
+}
@@ -1,70 +1,69 @@
 package student.adventure;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import student.adventure.Objects.Item;
-import student.adventure.Objects.Room;
 
 public class Inventory {
 
-  private Map<String, Item> inventory;
+  private final World world;
+  private final long[] inventory;
+  private int size;
 
   /**
-   * Constructor to instantiate Inventory
+   * Constructor to instantiate an empty Inventory for items of the given world. Items are stored
+   * as a bitset over the world's item ids.
+   *
+   * @param world
    */
-  Inventory() {
-    this.inventory = new HashMap<>();
+  Inventory(World world) {
+    this.world = world;
+    this.inventory = new long[(world.getItemCount() + 63) >>> 6];
   }
 
   /**
    * Adds the given item to Player's inventory and removes it from the room
    *
    * @param argument
-   * @param currentRoom
+   * @param currentRoom id of the player's room
+   * @param worldState the player's changes to the world
    * @return
    */
-  public Result takeItem(String argument, Room currentRoom) {
-    argument = argument.toLowerCase();
-
-    if (currentRoom.getItems().containsKey(argument)) {
-      Item itemObject = currentRoom.getItems().get(argument);
+  public Result takeItem(CharSequence argument, int currentRoom, WorldState worldState) {
+    int itemId = world.getItemId(argument);
 
+    // Remove item from the room's items
+    if (itemId != World.NO_ITEM && worldState.removeItem(currentRoom, itemId)) {
       // Add this item to inventory
-      inventory.put(itemObject.getName().toLowerCase(), itemObject);
-
-      // Remove item from the room's items
-      currentRoom.getItems().remove(argument);
-      return new Result(itemObject.getDescription(), State.SUCCESS);
+      add(itemId);
+      return Result.of(Outcome.TAKEN, world.getItem(itemId).getDescription());
     }
 
-    return new Result("There is no item \"" + argument + "\" in the room!", State.FAILURE);
+    return Result.of(Outcome.NO_ITEM_IN_ROOM, argument);
   }
 
   /**
    * Removes the given item from inventory and adds it to the room
    *
    * @param argument
-   * @param currentRoom
+   * @param currentRoom id of the player's room
+   * @param worldState the player's changes to the world
    * @return
    */
-  public Result dropItem(String argument, Room currentRoom) {
-    argument = argument.toLowerCase();
+  public Result dropItem(CharSequence argument, int currentRoom, WorldState worldState) {
+    int itemId = world.getItemId(argument);
     // Check if player has this item
-    if (!hasItem(argument)) {
-      return new Result("You do not have \"" + argument + "\" in your inventory!", State.FAILURE);
+    if (!hasItem(itemId)) {
+      return Result.of(Outcome.NOT_IN_INVENTORY, argument);
     }
-    // Check if room already has this item
-    if (currentRoom.getItems().containsKey(argument)) {
-      return new Result("The item \"" + argument + "\" is already in this room!", State.FAILURE);
+    // Add item to current room unless it already has it, then remove it from inventory
+    if (!worldState.addItem(currentRoom, itemId)) {
+      return Result.of(Outcome.ALREADY_IN_ROOM, argument);
     }
+    remove(itemId);
 
-    // Remove item from inventory and add to current room
-    Item item = inventory.get(argument);
-    inventory.remove(argument);
-    currentRoom.getItems().put(argument, item);
-
-    return new Result("", State.SUCCESS);
+    return Result.of(Outcome.DROPPED);
   }
 
   /**
@@ -73,14 +72,14 @@ public class Inventory {
    * @param argument
    * @return
    */
-  public Result inspectItem(String argument) {
-    argument = argument.toLowerCase();
+  public Result inspectItem(CharSequence argument) {
+    int itemId = world.getItemId(argument);
 
     // Check if player has this item
-    if (!hasItem(argument)) {
-      return new Result("You do not have \"" + argument + "\" in your inventory!", State.FAILURE);
+    if (!hasItem(itemId)) {
+      return Result.of(Outcome.NOT_IN_INVENTORY, argument);
     }
-    return new Result(inventory.get(argument).getDescription(), State.FAILURE);
+    return Result.of(Outcome.INSPECTED, world.getItem(itemId).getDescription());
   }
 
   /**
@@ -89,25 +88,94 @@ public class Inventory {
    * @param argument
    * @return
    */
-  public boolean hasItem(String argument) {
-    argument = argument.toLowerCase();
+  public boolean hasItem(CharSequence argument) {
+    return hasItem(world.getItemId(argument));
+  }
 
-    return this.inventory.containsKey(argument.toLowerCase());
+  /**
+   * Checks if inventory contains the item with the given id
+   *
+   * @param itemId
+   * @return
+   */
+  public boolean hasItem(int itemId) {
+    return itemId != World.NO_ITEM && (inventory[itemId >>> 6] & (1L << itemId)) != 0;
+  }
+
+  /**
+   * Checks if inventory contains every item whose bit is set in the given word of the bitset
+   *
+   * @param word index of the 64-item word
+   * @param bits
+   * @return
+   */
+  public boolean containsAll(int word, long bits) {
+    return (inventory[word] & bits) == bits;
   }
 
   /**
    * Returns an item in the inventory
    *
    * @param argument
-   * @return Item object
+   * @return Item object, or null if the item is not in the inventory
    */
-  public Item getItem(String argument) {
-    argument = argument.toLowerCase();
+  public Item getItem(CharSequence argument) {
+    int itemId = world.getItemId(argument);
 
-    return inventory.getOrDefault(argument, null);
+    return hasItem(itemId) ? world.getItem(itemId) : null;
+  }
+
+  /**
+   * Adds the item with the given id to the inventory
+   *
+   * @param itemId
+   */
+  void add(int itemId) {
+    if (!hasItem(itemId)) {
+      inventory[itemId >>> 6] |= 1L << itemId;
+      size++;
+    }
+  }
+
+  /**
+   * Removes the item with the given id from the inventory
+   *
+   * @param itemId
+   */
+  void remove(int itemId) {
+    if (hasItem(itemId)) {
+      inventory[itemId >>> 6] &= ~(1L << itemId);
+      size--;
+    }
+  }
+
+  /**
+   * Returns the ids of the items in the inventory in ascending order
+   *
+   * @return
+   */
+  int[] getItemIds() {
+    int[] ids = new int[size];
+    int i = 0;
+    for (int word = 0; word < inventory.length; word++) {
+      for (long bits = inventory[word]; bits != 0; bits &= bits - 1) {
+        ids[i++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+      }
+    }
+    return ids;
+  }
+
+  public int size() {
+    return size;
   }
 
   public Collection<Item> getInventorySet() {
-    return inventory.values();
+    List<Item> items = new ArrayList<>(size);
+    for (int word = 0; word < inventory.length; word++) {
+      for (long bits = inventory[word]; bits != 0; bits &= bits - 1) {
+        items.add(world.getItem((word << 6) + Long.numberOfTrailingZeros(bits)));
+      }
+    }
+    return items;
   }
 }
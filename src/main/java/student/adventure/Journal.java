@@ -0,0 +1,560 @@
+package student.adventure;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every session's accepted commands, so sessions survive the process dying.
+ *
+ * Appending only copies the record into a buffer. A background thread commits the buffer in
+ * groups: it waits up to the commit interval for more records to join, writes them in one go and
+ * forces them to disk, so the cost of syncing is shared by every command in the group. Commands
+ * are durable once their group commits; sync() waits for that.
+ *
+ * The log is split into numbered segments. A snapshot starts a new segment, writes the state of
+ * every session along with the number of its last command, and then deletes the segments before
+ * it, so recovery reads one snapshot and a bounded tail of commands. Sessions are captured one by
+ * one while commands keep flowing, so replay skips any command a session's snapshot already holds.
+ *
+ * <pre>
+ * segment   records of [int length][payload][int CRC-32 of payload], with payloads
+ *           CREATE [type][int session][id], END [type][int session],
+ *           COMMAND [type][int session][long sequence][byte state][command] or
+ *           STATE [type][int session][long sequence][int length][SaveGame bytes]
+ *           and strings as [int length][UTF-8 bytes]
+ * snapshot  [int magic][int version][long first segment to replay], then [byte 1][session]
+ *           per session as written by the caller, and a final [byte 0]
+ * </pre>
+ */
+final class Journal implements Closeable {
+
+  static final int MAGIC = 0x41444a53; // "ADJS"
+  static final int VERSION = 1;
+  static final long DEFAULT_COMMIT_INTERVAL = 5;
+
+  private static final byte CREATE = 1;
+  private static final byte COMMAND = 2;
+  private static final byte END = 3;
+  private static final byte STATE = 4;
+
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String SNAPSHOT = "snapshot.bin";
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int MAX_RECORD = 1 << 24;
+  private static final State[] STATES = State.values();
+
+  private final Path directory;
+  private final long commitInterval;
+  private final Object lock = new Object();
+  private final CRC32 crc = new CRC32();
+
+  // Guarded by lock
+  private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+  private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+  private FileChannel channel;
+  private long segment;
+  private long appended;
+  private long durable;
+  private long sinceSnapshot;
+  private int recordStart;
+  private boolean writing;
+  private boolean syncRequested;
+  private boolean closed;
+  private IOException failure;
+
+  private Thread committer;
+
+  /**
+   * Handles what recovery reads back, in the order it was written
+   */
+  interface Handler {
+
+    void restore(DataInputStream in) throws IOException;
+
+    void create(int session, String id) throws IOException;
+
+    void command(int session, long sequence, String command, State state) throws IOException;
+
+    void end(int session) throws IOException;
+
+    void state(int session, long sequence, byte[] save) throws IOException;
+  }
+
+  /**
+   * Writes the state of every session into a snapshot
+   */
+  interface SnapshotWriter {
+
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /**
+   * Constructor to keep a journal in the given directory, committing at most every commit
+   * interval milliseconds. Nothing can be appended until the journal has been recovered.
+   *
+   * @param directory
+   * @param commitInterval
+   * @throws IOException
+   */
+  Journal(Path directory, long commitInterval) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.commitInterval = commitInterval;
+  }
+
+  /**
+   * Reads back the latest snapshot and every command after it, then starts a new segment for
+   * what comes next. A record cut short by a crash ends its segment.
+   *
+   * @param handler
+   * @throws IOException
+   */
+  void recover(Handler handler) throws IOException {
+    long first = 0;
+    Path snapshot = directory.resolve(SNAPSHOT);
+    if (Files.exists(snapshot)) {
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(snapshot), BUFFER_SIZE))) {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+          throw new IOException("Not a journal snapshot: " + snapshot);
+        }
+        first = in.readLong();
+        while (in.readBoolean()) {
+          handler.restore(in);
+        }
+      }
+    }
+
+    List<Long> segments = segments();
+    for (long number : segments) {
+      if (number >= first) {
+        replay(segmentPath(number), handler);
+      }
+    }
+    segment = Math.max(first, segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1);
+
+    synchronized (lock) {
+      channel = openSegment(segment);
+    }
+    committer = new Thread(this::commitLoop, "journal-committer");
+    committer.setDaemon(true);
+    committer.start();
+  }
+
+  /**
+   * Records a new session under the number its records are kept under
+   *
+   * @param session
+   * @param id
+   */
+  void create(int session, String id) {
+    byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+    synchronized (lock) {
+      ByteBuffer record = begin(1 + 4 + 4 + bytes.length);
+      record.put(CREATE).putInt(session).putInt(bytes.length).put(bytes);
+      end(record);
+    }
+  }
+
+  /**
+   * Records an accepted command of a session. Sequences count each session's commands from 1.
+   *
+   * @param session
+   * @param sequence
+   * @param command
+   * @param state
+   */
+  void command(int session, long sequence, String command, State state) {
+    byte[] bytes = command.getBytes(StandardCharsets.UTF_8);
+    synchronized (lock) {
+      ByteBuffer record = begin(1 + 4 + 8 + 1 + 4 + bytes.length);
+      record.put(COMMAND).putInt(session).putLong(sequence).put((byte) state.ordinal())
+          .putInt(bytes.length).put(bytes);
+      end(record);
+    }
+  }
+
+  /**
+   * Records that a session's whole state was replaced by the given saved game
+   *
+   * @param session
+   * @param sequence
+   * @param save
+   */
+  void state(int session, long sequence, byte[] save) {
+    synchronized (lock) {
+      ByteBuffer record = begin(1 + 4 + 8 + 4 + save.length);
+      record.put(STATE).putInt(session).putLong(sequence).putInt(save.length).put(save);
+      end(record);
+    }
+  }
+
+  /**
+   * Records the end of a session
+   *
+   * @param session
+   */
+  void end(int session) {
+    synchronized (lock) {
+      ByteBuffer record = begin(1 + 4);
+      record.put(END).putInt(session);
+      end(record);
+    }
+  }
+
+  /**
+   * Waits until everything appended so far is on disk
+   *
+   * @throws IOException if committing failed
+   */
+  void sync() throws IOException {
+    synchronized (lock) {
+      long target = appended;
+      syncRequested = true;
+      lock.notifyAll();
+      while (durable < target && failure == null) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while syncing the journal", e);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  /**
+   * Writes a snapshot of every session and deletes the segments it replaces
+   *
+   * @param writer
+   * @throws IOException
+   */
+  void snapshot(SnapshotWriter writer) throws IOException {
+    // Commit what is pending to the current segment and start the next one; every command in
+    // earlier segments is then already part of the sessions being captured
+    long first;
+    synchronized (lock) {
+      checkOpen();
+      while (writing) {
+        waitForCommitter();
+      }
+      write(pending);
+      channel.close();
+      durable = appended;
+      first = ++segment;
+      channel = openSegment(first);
+      sinceSnapshot = 0;
+      lock.notifyAll();
+    }
+
+    Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+    try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(file), BUFFER_SIZE));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(first);
+      writer.write(out);
+      out.writeBoolean(false);
+      out.flush();
+      file.force(true);
+    }
+    Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+
+    for (long number : segments()) {
+      if (number < first) {
+        Files.delete(segmentPath(number));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of records appended since the last snapshot
+   *
+   * @return
+   */
+  long sinceSnapshot() {
+    synchronized (lock) {
+      return sinceSnapshot;
+    }
+  }
+
+  /**
+   * Commits everything pending and closes the journal
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      lock.notifyAll();
+    }
+    if (committer != null) {
+      try {
+        committer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (lock) {
+      if (channel != null) {
+        write(pending);
+        channel.close();
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  /**
+   * Starts a record of the given payload length in the pending buffer, growing it if needed
+   */
+  private ByteBuffer begin(int length) {
+    if (committer == null || closed) {
+      throw new IllegalStateException("Journal is not open");
+    }
+    if (failure != null) {
+      throw new UncheckedIOException(failure);
+    }
+    if (length > MAX_RECORD) {
+      throw new IllegalArgumentException("Journal record too long: " + length + " bytes");
+    }
+    if (pending.remaining() < length + 8) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, length + 8
+          + pending.position()));
+      pending.flip();
+      pending = larger.put(pending);
+    }
+    pending.putInt(length);
+    recordStart = pending.position();
+    return pending;
+  }
+
+  /**
+   * Seals the record just written with its checksum and wakes the committer if the buffer is
+   * filling up
+   */
+  private void end(ByteBuffer record) {
+    ByteBuffer payload = record.duplicate();
+    payload.limit(record.position()).position(recordStart);
+    crc.reset();
+    crc.update(payload);
+    record.putInt((int) crc.getValue());
+    appended++;
+    sinceSnapshot++;
+    if (record.position() >= BUFFER_SIZE / 2) {
+      lock.notifyAll();
+    }
+  }
+
+  private void commitLoop() {
+    while (true) {
+      ByteBuffer batch;
+      FileChannel target;
+      long batchEnd;
+      synchronized (lock) {
+        try {
+          while (pending.position() == 0 && !closed) {
+            lock.wait();
+          }
+          // Give other commands a chance to join the group
+          if (!closed && !syncRequested && pending.position() < BUFFER_SIZE / 2) {
+            lock.wait(commitInterval);
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        if (closed) {
+          return;
+        }
+        if (pending.position() == 0) {
+          continue;
+        }
+        batch = pending;
+        pending = spare;
+        spare = null;
+        batchEnd = appended;
+        target = channel;
+        writing = true;
+        syncRequested = false;
+      }
+
+      IOException error = null;
+      try {
+        batch.flip();
+        while (batch.hasRemaining()) {
+          target.write(batch);
+        }
+        target.force(false);
+      } catch (IOException e) {
+        error = e;
+      }
+      batch.clear();
+
+      synchronized (lock) {
+        spare = batch;
+        writing = false;
+        if (error == null) {
+          durable = Math.max(durable, batchEnd);
+        } else {
+          failure = error;
+        }
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Writes and forces the given buffer to the current segment; the caller holds the lock
+   */
+  private void write(ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    channel.force(false);
+    buffer.clear();
+  }
+
+  private void waitForCommitter() throws IOException {
+    try {
+      lock.wait();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the journal", e);
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (committer == null || closed) {
+      throw new IllegalStateException("Journal is not open");
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Reads every intact record of a segment in order
+   */
+  private void replay(Path path, Handler handler) throws IOException {
+    try (InputStream file = Files.newInputStream(path)) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE));
+      CRC32 check = new CRC32();
+      byte[] payload = new byte[256];
+      while (true) {
+        int length;
+        int checksum;
+        try {
+          length = in.readInt();
+          if (length <= 0 || length > MAX_RECORD) {
+            return;
+          }
+          if (payload.length < length) {
+            payload = new byte[Math.max(length, payload.length * 2)];
+          }
+          in.readFully(payload, 0, length);
+          checksum = in.readInt();
+        } catch (EOFException e) {
+          return;
+        }
+        check.reset();
+        check.update(payload, 0, length);
+        if ((int) check.getValue() != checksum) {
+          return;
+        }
+        apply(ByteBuffer.wrap(payload, 0, length), handler);
+      }
+    }
+  }
+
+  private void apply(ByteBuffer record, Handler handler) throws IOException {
+    byte type = record.get();
+    int session = record.getInt();
+    switch (type) {
+      case CREATE:
+        handler.create(session, readString(record));
+        break;
+      case COMMAND:
+        long sequence = record.getLong();
+        State state = STATES[record.get()];
+        handler.command(session, sequence, readString(record), state);
+        break;
+      case END:
+        handler.end(session);
+        break;
+      case STATE:
+        long stateSequence = record.getLong();
+        byte[] save = new byte[record.getInt()];
+        record.get(save);
+        handler.state(session, stateSequence, save);
+        break;
+      default:
+        throw new IOException("Unknown journal record type " + type);
+    }
+  }
+
+  private static String readString(ByteBuffer record) {
+    int length = record.getInt();
+    String value = new String(record.array(), record.arrayOffset() + record.position(), length,
+        StandardCharsets.UTF_8);
+    record.position(record.position() + length);
+    return value;
+  }
+
+  private FileChannel openSegment(long number) throws IOException {
+    return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private Path segmentPath(long number) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+  }
+
+  /**
+   * Returns the numbers of the segments in the directory, in order
+   */
+  private List<Long> segments() throws IOException {
+    List<Long> numbers = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+        SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        numbers.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+            name.length() - SEGMENT_SUFFIX.length())));
+      }
+    }
+    Collections.sort(numbers);
+    return numbers;
+  }
+}
@@ -0,0 +1,144 @@
+package student.adventure;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Buckets are log-linear: every power of two is
+ * split into SUB_BUCKETS equal buckets, so any recorded value is reported within about 6% of its
+ * true value, from single nanoseconds up to MAX_NANOS. Each thread records into its own stripe
+ * of buckets, count and sum, so threads timing the same action do not fight over cache lines;
+ * recording allocates nothing. Reads add the stripes up without stopping writers, so they may miss
+ * values recorded while they are read.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int MAGNITUDES = 40;
+  static final long MAX_NANOS = (1L << MAGNITUDES) - 1;
+
+  private static final int BUCKETS = (MAGNITUDES - SUB_BITS + 1) << SUB_BITS;
+
+  // Layout of a stripe: padding, count, sum, buckets, padding. The padding keeps the count and
+  // sum of one stripe off the cache lines of the stripes allocated next to it.
+  private static final int PADDING = 8;
+  private static final int COUNT = PADDING;
+  private static final int SUM = COUNT + 1;
+  private static final int FIRST_BUCKET = SUM + 1;
+  private static final int STRIPE_LENGTH = FIRST_BUCKET + BUCKETS + PADDING;
+
+  private final String name;
+  private final AtomicLongArray[] stripes = new AtomicLongArray[Stripes.COUNT];
+
+  /**
+   * Constructor to instantiate an empty histogram
+   *
+   * @param name
+   */
+  LatencyHistogram(String name) {
+    this.name = name;
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new AtomicLongArray(STRIPE_LENGTH);
+    }
+  }
+
+  /**
+   * Records the time since the given System.nanoTime() reading
+   *
+   * @param start
+   */
+  void recordSince(long start) {
+    record(System.nanoTime() - start);
+  }
+
+  /**
+   * Records a duration; negative durations count as 0 and longer ones than MAX_NANOS as MAX_NANOS
+   *
+   * @param nanos
+   */
+  void record(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), MAX_NANOS);
+    AtomicLongArray stripe = stripes[Stripes.current()];
+    stripe.incrementAndGet(FIRST_BUCKET + index(value));
+    stripe.incrementAndGet(COUNT);
+    stripe.addAndGet(SUM, value);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  long getCount() {
+    return total(COUNT);
+  }
+
+  /**
+   * @return the mean duration in nanoseconds, or 0 if nothing was recorded
+   */
+  long getMean() {
+    long count = total(COUNT);
+    return count == 0 ? 0 : total(SUM) / count;
+  }
+
+  /**
+   * Returns the duration in nanoseconds that the given fraction of recorded durations do not
+   * exceed, e.g. 0.99 for the 99th percentile, or 0 if nothing was recorded
+   *
+   * @param quantile
+   * @return
+   */
+  long getPercentile(double quantile) {
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = total(FIRST_BUCKET + i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return highestValue(i);
+      }
+    }
+    return MAX_NANOS;
+  }
+
+  /**
+   * Returns the sum of the given slot over every stripe
+   */
+  private long total(int slot) {
+    long total = 0;
+    for (AtomicLongArray stripe : stripes) {
+      total += stripe.get(slot);
+    }
+    return total;
+  }
+
+  /**
+   * Values below SUB_BUCKETS get a bucket each; above, the bucket is picked by the position of the
+   * highest bit and the SUB_BITS bits after it
+   */
+  static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /**
+   * Returns the highest value that falls into the given bucket
+   */
+  static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BITS) - 1;
+    return ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)) + 1) << shift) - 1;
+  }
+}
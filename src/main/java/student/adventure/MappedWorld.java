@@ -0,0 +1,322 @@
+package student.adventure;
+
+import static student.adventure.WorldFile.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import student.adventure.Objects.Configuration;
+import student.adventure.Objects.Direction;
+import student.adventure.Objects.Item;
+import student.adventure.Objects.Room;
+import student.adventure.Objects.RoomType;
+
+/**
+ * World read directly from a memory-mapped file in the binary format written by WorldCompiler.
+ * Opening only maps the file, so startup does not depend on the size of the world, and JVMs that
+ * open the same file share its pages. Rooms are assembled from the file when they are asked for.
+ */
+public class MappedWorld extends World {
+
+  private static final RoomType[] TYPES = RoomType.values();
+  private static final int ITEM_CACHE_SLOTS = 1024;
+
+  private final int roomCount;
+  private final int itemCount;
+  private final ByteBuffer[] strings;
+  private final LongBuffer rooms;
+  private final IntBuffer exits;
+  private final ByteBuffer types;
+  private final LongBuffer items;
+  private final LongBuffer pool;
+  private final IntBuffer roomIndex;
+  private final IntBuffer itemIndex;
+  private final CachedItem[] itemCache;
+
+  private MappedWorld(Configuration configuration, LongBuffer header, ByteBuffer[] strings,
+      FileChannel channel) throws IOException {
+    super(configuration);
+    this.roomCount = (int) header.get(H_ROOM_COUNT);
+    this.itemCount = (int) header.get(H_ITEM_COUNT);
+    this.strings = strings;
+    this.rooms = map(channel, header.get(H_ROOMS), roomCount * 8L * ROOM_LONGS).asLongBuffer();
+    this.exits = map(channel, header.get(H_EXITS), roomCount * 4L * Direction.count())
+        .asIntBuffer();
+    this.types = map(channel, header.get(H_TYPES), roomCount);
+    this.items = map(channel, header.get(H_ITEMS), itemCount * 8L * ITEM_LONGS).asLongBuffer();
+    this.pool = map(channel, header.get(H_POOL), header.get(H_POOL_LENGTH) * 8).asLongBuffer();
+    this.roomIndex = map(channel, header.get(H_ROOM_INDEX), header.get(H_ROOM_INDEX_CAPACITY) * 4)
+        .asIntBuffer();
+    this.itemIndex = map(channel, header.get(H_ITEM_INDEX), header.get(H_ITEM_INDEX_CAPACITY) * 4)
+        .asIntBuffer();
+    this.itemCache = new CachedItem[Math.min(ITEM_CACHE_SLOTS, Integer.highestOneBit(
+        Math.max(1, itemCount) * 2 - 1))];
+  }
+
+  /**
+   * Maps the compiled world at the given path
+   *
+   * @param path
+   * @return
+   * @throws IOException
+   * @throws IllegalArgumentException if the file is not a compiled world of a supported version
+   */
+  public static MappedWorld open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_LONGS * 8) {
+        throw new IllegalArgumentException("Not a compiled world: " + path);
+      }
+      LongBuffer header = map(channel, 0, HEADER_LONGS * 8).asLongBuffer();
+      long magic = header.get(H_MAGIC);
+      if ((int) (magic >>> 32) != MAGIC || (int) magic != VERSION) {
+        throw new IllegalArgumentException("Not a compiled world of version " + VERSION + ": "
+            + path);
+      }
+
+      // Map the string table in chunks; no string crosses a chunk boundary
+      long stringsStart = header.get(H_STRINGS);
+      long stringsLength = header.get(H_STRINGS_LENGTH);
+      ByteBuffer[] strings = new ByteBuffer[(int) ((stringsLength + STRING_CHUNK - 1)
+          / STRING_CHUNK)];
+      for (int chunk = 0; chunk < strings.length; chunk++) {
+        long offset = chunk * STRING_CHUNK;
+        strings[chunk] = map(channel, stringsStart + offset,
+            Math.min(STRING_CHUNK, stringsLength - offset));
+      }
+
+      int startingRoom = (int) header.get(H_STARTING_ROOM);
+      LongBuffer startingRecord = map(channel,
+          header.get(H_ROOMS) + 8L * startingRoom * ROOM_LONGS, 8L * ROOM_LONGS).asLongBuffer();
+      Configuration configuration = new Configuration(
+          readString(strings, startingRecord.get(R_KEY)),
+          readString(strings, header.get(H_INITIALIZATION_TEXT)),
+          readString(strings, header.get(H_VICTORY_TEXT)));
+      return new MappedWorld(configuration, header, strings, channel);
+    }
+  }
+
+  @Override
+  public int getRoomId(String roomKey) {
+    int mask = roomIndex.capacity() - 1;
+    for (int slot = mix(roomKey.hashCode()) & mask; roomIndex.get(slot) != EMPTY_SLOT;
+        slot = (slot + 1) & mask) {
+      int id = roomIndex.get(slot);
+      if (matches(room(id, R_KEY), roomKey, false)) {
+        return id;
+      }
+    }
+    return NO_ROOM;
+  }
+
+  @Override
+  public String getRoomKey(int roomId) {
+    return readString(strings, room(roomId, R_KEY));
+  }
+
+  @Override
+  public int getRoomCount() {
+    return roomCount;
+  }
+
+  @Override
+  public int getExit(int roomId, Direction direction) {
+    return exits.get(roomId * Direction.count() + direction.ordinal());
+  }
+
+  @Override
+  public RoomType getType(int roomId) {
+    return TYPES[types.get(roomId)];
+  }
+
+  @Override
+  public Room getRoom(int roomId) {
+    return getRoom(roomId, true);
+  }
+
+  /**
+   * Assembles the given room from the file, optionally leaving its description on disk
+   *
+   * @param roomId
+   * @param withDescription
+   * @return
+   */
+  Room getRoom(int roomId, boolean withDescription) {
+    Map<String, Item> roomItems = new LinkedHashMap<>();
+    for (int itemId : getRoomItems(roomId)) {
+      roomItems.put(getItemName(itemId), getItem(itemId));
+    }
+
+    int directions = (int) room(roomId, R_DIRECTIONS);
+    Map<String, String> exitKeys = new LinkedHashMap<>();
+    for (int i = 0; i < pool.get(directions); i++) {
+      exitKeys.put(readString(strings, pool.get(directions + 1 + 2 * i)),
+          getRoomKey((int) pool.get(directions + 2 + 2 * i)));
+    }
+
+    int requirements = (int) room(roomId, R_REQUIREMENTS);
+    String[] names = new String[(int) pool.get(requirements)];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = readString(strings, pool.get(requirements + 1 + 2 * i));
+    }
+
+    return new Room(readString(strings, room(roomId, R_NAME)),
+        withDescription ? getDescription(roomId) : null,
+        readString(strings, room(roomId, R_TYPE)), roomItems, exitKeys, names);
+  }
+
+  @Override
+  public String getDescription(int roomId) {
+    return readString(strings, room(roomId, R_DESCRIPTION));
+  }
+
+  @Override
+  public int getItemId(CharSequence name) {
+    int mask = itemIndex.capacity() - 1;
+    for (int slot = NameIndex.hash(name) & mask; itemIndex.get(slot) != EMPTY_SLOT;
+        slot = (slot + 1) & mask) {
+      int id = itemIndex.get(slot);
+      if (matches(items.get(id * ITEM_LONGS + I_NAME), name, true)) {
+        return id;
+      }
+    }
+    return NO_ITEM;
+  }
+
+  @Override
+  public Item getItem(int itemId) {
+    // Recently assembled items are kept in a fixed number of slots so heap use stays bounded
+    int slot = itemId & (itemCache.length - 1);
+    CachedItem cached = itemCache[slot];
+    if (cached != null && cached.id == itemId) {
+      return cached.item;
+    }
+    long description = items.get(itemId * ITEM_LONGS + I_DESCRIPTION);
+    if (description == NO_STRING) {
+      return null;
+    }
+    Item item = new Item(readString(strings, items.get(itemId * ITEM_LONGS + I_NAME)),
+        readString(strings, description),
+        items.get(itemId * ITEM_LONGS + I_VALUE));
+    itemCache[slot] = new CachedItem(itemId, item);
+    return item;
+  }
+
+  @Override
+  public String getItemName(int itemId) {
+    return readString(strings, items.get(itemId * ITEM_LONGS + I_NAME)).toLowerCase();
+  }
+
+  @Override
+  public int getItemCount() {
+    return itemCount;
+  }
+
+  @Override
+  public int[] getRoomItems(int roomId) {
+    int start = (int) room(roomId, R_ITEMS);
+    int[] ids = new int[(int) pool.get(start)];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = (int) pool.get(start + 1 + i);
+    }
+    return ids;
+  }
+
+  @Override
+  public boolean hasItem(int roomId, int itemId) {
+    // Binary search over the room's sorted item ids in the pool
+    int start = (int) room(roomId, R_ITEMS) + 1;
+    int low = 0;
+    int high = (int) pool.get(start - 1) - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      long id = pool.get(start + middle);
+      if (id < itemId) {
+        low = middle + 1;
+      } else if (id > itemId) {
+        high = middle - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean meetsRequirements(int roomId, Inventory inventory) {
+    int start = (int) room(roomId, R_REQUIREMENTS);
+    int pairs = start + 1 + 2 * (int) pool.get(start);
+    for (int i = 0; i < pool.get(pairs); i++) {
+      int word = (int) pool.get(pairs + 1 + 2 * i);
+      if (!inventory.containsAll(word, pool.get(pairs + 2 + 2 * i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long room(int roomId, int field) {
+    return rooms.get(roomId * ROOM_LONGS + field);
+  }
+
+  /**
+   * Compares a stored string with the given characters without decoding it, as long as it is
+   * ASCII; other strings are decoded first
+   */
+  private boolean matches(long ref, CharSequence value, boolean ignoreCase) {
+    ByteBuffer chunk = strings[(int) (ref / STRING_CHUNK)];
+    int position = (int) (ref % STRING_CHUNK);
+    int length = chunk.getInt(position);
+    boolean equal = length == value.length();
+    for (int i = 0; i < length; i++) {
+      byte b = chunk.get(position + 4 + i);
+      if (b < 0) {
+        String decoded = readString(strings, ref);
+        return ignoreCase ? NameIndex.matches(decoded.toLowerCase(), value)
+            : decoded.contentEquals(value);
+      }
+      if (equal) {
+        char expected = value.charAt(i);
+        equal = ignoreCase ? Character.toLowerCase((char) b) == Character.toLowerCase(expected)
+            : b == expected;
+      }
+    }
+    return equal;
+  }
+
+  private static String readString(ByteBuffer[] strings, long ref) {
+    if (ref == NO_STRING) {
+      return null;
+    }
+    ByteBuffer chunk = strings[(int) (ref / STRING_CHUNK)];
+    int position = (int) (ref % STRING_CHUNK);
+    byte[] bytes = new byte[chunk.getInt(position)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = chunk.get(position + 4 + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, long size)
+      throws IOException {
+    return channel.map(MapMode.READ_ONLY, position, size);
+  }
+
+  private static class CachedItem {
+
+    private final int id;
+    private final Item item;
+
+    private CachedItem(int id, Item item) {
+      this.id = id;
+      this.item = item;
+    }
+  }
+}
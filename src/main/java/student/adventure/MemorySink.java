@@ -0,0 +1,38 @@
+package student.adventure;
+
+/**
+ * Collects output in memory, for scripted replays and tests that run games headlessly
+ */
+public class MemorySink implements OutputSink {
+
+  private final StringBuilder buffer = new StringBuilder();
+  private int flushed;
+
+  @Override
+  public OutputSink print(CharSequence text) {
+    buffer.append(text);
+    return this;
+  }
+
+  @Override
+  public void flush() {
+    flushed = buffer.length();
+  }
+
+  /**
+   * Returns everything flushed so far
+   *
+   * @return
+   */
+  public String getOutput() {
+    return buffer.substring(0, flushed);
+  }
+
+  /**
+   * Forgets all output, flushed or not
+   */
+  public void clear() {
+    buffer.setLength(0);
+    flushed = 0;
+  }
+}
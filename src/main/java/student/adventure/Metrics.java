@@ -0,0 +1,246 @@
+package student.adventure;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide metrics of what players do and how long it takes: a latency histogram for every
+ * action and every Game Engine method, counts of commands by verb and of results by State, and
+ * counts of visits to each room of the hosted world. Histograms are created once, when the code
+ * that records into them is loaded, so recording never looks anything up or allocates.
+ *
+ * The server publishes these over JMX and as plain text in the Prometheus exposition format.
+ */
+public final class Metrics implements MetricsMXBean {
+
+  public static final String OBJECT_NAME = "student.adventure:type=Metrics";
+  static final String ACTION_PREFIX = "action.";
+  static final int TOP_ROOMS = 10;
+
+  private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+  private static final LongAdder[] results = new LongAdder[State.values().length];
+
+  static {
+    for (int i = 0; i < results.length; i++) {
+      results[i] = new LongAdder();
+    }
+  }
+
+  private final World world;
+
+  private Metrics(World world) {
+    this.world = world;
+  }
+
+  /**
+   * Returns the histogram with the given name, creating it the first time
+   *
+   * @param name
+   * @return
+   */
+  static LatencyHistogram histogram(String name) {
+    return histograms.computeIfAbsent(name, LatencyHistogram::new);
+  }
+
+  /**
+   * Returns an action that performs the given one, timing it under its verb and counting its
+   * result
+   *
+   * @param verb
+   * @param action
+   * @return
+   */
+  static Action timed(String verb, final Action action) {
+    final LatencyHistogram latency = histogram(ACTION_PREFIX + verb);
+    return new Action() {
+      @Override
+      public Result performAction(GameEngine engine, CharSequence argument) {
+        long start = System.nanoTime();
+        Result result = action.performAction(engine, argument);
+        latency.recordSince(start);
+        countResult(result.getState());
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Counts a command that ended in the given state
+   *
+   * @param state
+   */
+  static void countResult(State state) {
+    results[state.ordinal()].increment();
+  }
+
+  static long getResultCount(State state) {
+    return results[state.ordinal()].sum();
+  }
+
+  /**
+   * Publishes the metrics of games on the given world over JMX, replacing any published before
+   *
+   * @param world
+   */
+  public static synchronized void register(World world) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(new Metrics(world), name);
+    } catch (JMException e) {
+      throw new IllegalStateException("Could not register metrics", e);
+    }
+  }
+
+  /**
+   * Returns every metric as plain text in the Prometheus exposition format
+   *
+   * @param world the world whose room visits to include, or null
+   * @return
+   */
+  static String report(World world) {
+    StringBuilder out = new StringBuilder();
+    out.append("# TYPE adventure_commands_total counter\n");
+    for (LatencyHistogram histogram : histograms.values()) {
+      if (histogram.getName().startsWith(ACTION_PREFIX)) {
+        label(out, "adventure_commands_total", "verb",
+            histogram.getName().substring(ACTION_PREFIX.length()))
+            .append(' ').append(histogram.getCount()).append('\n');
+      }
+    }
+
+    out.append("# TYPE adventure_results_total counter\n");
+    for (State state : State.values()) {
+      label(out, "adventure_results_total", "state", state.name())
+          .append(' ').append(getResultCount(state)).append('\n');
+    }
+
+    out.append("# TYPE adventure_latency_nanos summary\n");
+    for (LatencyHistogram histogram : histograms.values()) {
+      for (String quantile : new String[] {"0.5", "0.99", "0.999"}) {
+        out.append("adventure_latency_nanos{name=\"").append(histogram.getName())
+            .append("\",quantile=\"").append(quantile).append("\"} ")
+            .append(histogram.getPercentile(Double.parseDouble(quantile))).append('\n');
+      }
+      label(out, "adventure_latency_nanos_count", "name", histogram.getName())
+          .append(' ').append(histogram.getCount()).append('\n');
+    }
+
+    if (world != null) {
+      out.append("# TYPE adventure_room_visits_total counter\n");
+      for (Map.Entry<String, Long> room : topRoomVisits(world).entrySet()) {
+        label(out, "adventure_room_visits_total", "room", room.getKey())
+            .append(' ').append(room.getValue()).append('\n');
+      }
+      out.append("# TYPE adventure_room_visits_untracked_total counter\n")
+          .append("adventure_room_visits_untracked_total ")
+          .append(world.getRoomVisits().getUntracked()).append('\n');
+    }
+    return out.toString();
+  }
+
+  /**
+   * Returns the most visited rooms of the given world, most visited first
+   *
+   * @param world
+   * @return
+   */
+  static Map<String, Long> topRoomVisits(World world) {
+    // Keep only the top rooms in a small heap rather than sorting every room visited
+    PriorityQueue<long[]> top = new PriorityQueue<>(TOP_ROOMS + 1,
+        Comparator.comparingLong((long[] room) -> room[1]));
+    for (long[] room : world.getRoomVisits().getCounts()) {
+      if (top.size() < TOP_ROOMS || room[1] > top.peek()[1]) {
+        top.add(room);
+        if (top.size() > TOP_ROOMS) {
+          top.poll();
+        }
+      }
+    }
+    long[][] rooms = top.toArray(new long[0][]);
+    Arrays.sort(rooms, (a, b) -> Long.compare(b[1], a[1]));
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (long[] room : rooms) {
+      result.put(world.getRoomKey((int) room[0]), room[1]);
+    }
+    return result;
+  }
+
+  @Override
+  public Map<String, Long> getCommandCounts() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (LatencyHistogram histogram : histograms.values()) {
+      if (histogram.getName().startsWith(ACTION_PREFIX)) {
+        counts.put(histogram.getName().substring(ACTION_PREFIX.length()), histogram.getCount());
+      }
+    }
+    return counts;
+  }
+
+  @Override
+  public Map<String, Long> getResultCounts() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (State state : State.values()) {
+      counts.put(state.name(), getResultCount(state));
+    }
+    return counts;
+  }
+
+  @Override
+  public Map<String, Long> getP50Nanos() {
+    return percentiles(0.5);
+  }
+
+  @Override
+  public Map<String, Long> getP99Nanos() {
+    return percentiles(0.99);
+  }
+
+  @Override
+  public Map<String, Long> getP999Nanos() {
+    return percentiles(0.999);
+  }
+
+  @Override
+  public Map<String, Long> getTopRoomVisits() {
+    return topRoomVisits(world);
+  }
+
+  @Override
+  public String getReport() {
+    return report(world);
+  }
+
+  private static Map<String, Long> percentiles(double quantile) {
+    Map<String, Long> values = new LinkedHashMap<>();
+    for (LatencyHistogram histogram : histograms.values()) {
+      values.put(histogram.getName(), histogram.getPercentile(quantile));
+    }
+    return values;
+  }
+
+  private static StringBuilder label(StringBuilder out, String metric, String label,
+      String value) {
+    out.append(metric).append('{').append(label).append("=\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' || c == '"') {
+        out.append('\\');
+      }
+      out.append(c == '\n' ? ' ' : c);
+    }
+    return out.append("\"}");
+  }
+}
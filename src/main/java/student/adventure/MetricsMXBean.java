@@ -0,0 +1,24 @@
+package student.adventure;
+
+import java.util.Map;
+
+/**
+ * Command metrics as seen over JMX. Latencies are in nanoseconds, keyed by action verb
+ * ("action.go") or Game Engine method ("GameEngine.takeItem").
+ */
+public interface MetricsMXBean {
+
+  Map<String, Long> getCommandCounts();
+
+  Map<String, Long> getResultCounts();
+
+  Map<String, Long> getP50Nanos();
+
+  Map<String, Long> getP99Nanos();
+
+  Map<String, Long> getP999Nanos();
+
+  Map<String, Long> getTopRoomVisits();
+
+  String getReport();
+}
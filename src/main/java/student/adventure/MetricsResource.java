@@ -0,0 +1,37 @@
+package student.adventure;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Plain-text endpoint for scraping command metrics
+ */
+@Path("metrics")
+public class MetricsResource {
+
+  private final SessionManager sessions;
+
+  /**
+   * Constructor to report metrics of the given manager's world
+   *
+   * @param sessions
+   */
+  @Inject
+  public MetricsResource(SessionManager sessions) {
+    this.sessions = sessions;
+  }
+
+  /**
+   * Returns every metric in the Prometheus text exposition format
+   *
+   * @return
+   */
+  @GET
+  @Produces(MediaType.TEXT_PLAIN)
+  public String report() {
+    return Metrics.report(sessions.getWorld());
+  }
+}
@@ -0,0 +1,70 @@
+package student.adventure;
+
+import java.util.List;
+
+/**
+ * Immutable open-addressing index from case-insensitive names to dense ids. Lookups hash the
+ * characters of any CharSequence directly, so they need no lowercased copy of the name.
+ */
+final class NameIndex {
+
+  private final String[] keys;
+  private final int[] ids;
+  private final int mask;
+
+  /**
+   * Constructor to index the given names, each name's id being its position in the list
+   *
+   * @param names lowercase, distinct names
+   */
+  NameIndex(List<String> names) {
+    int capacity = Integer.highestOneBit(Math.max(2, names.size() * 2) - 1) << 1;
+    this.keys = new String[capacity];
+    this.ids = new int[capacity];
+    this.mask = capacity - 1;
+
+    for (int id = 0; id < names.size(); id++) {
+      int slot = hash(names.get(id)) & mask;
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = names.get(id);
+      ids[slot] = id;
+    }
+  }
+
+  /**
+   * Returns the id of the given name ignoring case, or -1 if it is not indexed
+   *
+   * @param name
+   * @return
+   */
+  int get(CharSequence name) {
+    for (int slot = hash(name) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+      if (matches(keys[slot], name)) {
+        return ids[slot];
+      }
+    }
+    return -1;
+  }
+
+  static int hash(CharSequence name) {
+    int h = 0;
+    for (int i = 0; i < name.length(); i++) {
+      h = 31 * h + Character.toLowerCase(name.charAt(i));
+    }
+    return h ^ (h >>> 16);
+  }
+
+  static boolean matches(String key, CharSequence name) {
+    if (key.length() != name.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      if (key.charAt(i) != Character.toLowerCase(name.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -6,6 +6,15 @@ public class Configuration {
   private String initializationText;
   private String victoryText;
 
+  public Configuration() {
+  }
+
+  public Configuration(String startingRoom, String initializationText, String victoryText) {
+    this.startingRoom = startingRoom;
+    this.initializationText = initializationText;
+    this.victoryText = victoryText;
+  }
+
   public String getVictoryText() {
     return victoryText;
   }
@@ -26,5 +26,49 @@ public enum Direction {
     }
   };
 
+  private static final Direction[] VALUES = values();
+
   public abstract String getKey();
+
+  /**
+   * Returns the direction with the given name ignoring case, or null if there is none. Unlike
+   * valueOf this neither allocates nor throws.
+   *
+   * @param name
+   * @return
+   */
+  public static Direction fromString(CharSequence name) {
+    for (Direction direction : VALUES) {
+      if (matches(direction.getKey(), name)) {
+        return direction;
+      }
+    }
+    return null;
+  }
+
+  private static boolean matches(String key, CharSequence name) {
+    if (key.length() != name.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      if (Character.toLowerCase(key.charAt(i)) != Character.toLowerCase(name.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the direction at the given ordinal
+   *
+   * @param ordinal
+   * @return
+   */
+  public static Direction of(int ordinal) {
+    return VALUES[ordinal];
+  }
+
+  public static int count() {
+    return VALUES.length;
+  }
 }
@@ -1,15 +1,49 @@
 package student.adventure.Objects;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+
 public class Item {
 
+  /**
+   * Value of an item whose world file gives none
+   */
+  public static final long NO_VALUE = Long.MIN_VALUE;
+
   private String description;
   private String name;
-  private Float value;
 
-  public Float getValue() {
+  // Whole cents, so trades are exact however many there are
+  @JsonAdapter(CentsAdapter.class)
+  private long value = NO_VALUE;
+
+  public Item() {
+  }
+
+  public Item(String name, String description, long value) {
+    this.name = name;
+    this.description = description;
+    this.value = value;
+  }
+
+  /**
+   * Returns the value of this item in cents
+   *
+   * @return
+   */
+  public long getValue() {
     return value;
   }
 
+  public boolean hasValue() {
+    return value != NO_VALUE;
+  }
+
   public String getName() {
     return name;
   }
@@ -17,4 +51,34 @@ public class Item {
   public String getDescription() {
     return description;
   }
+
+  /**
+   * Reads the dollar amounts of world files, e.g. 12.5, as whole cents without going through
+   * floating point, so no amount is rounded to a nearby one
+   */
+  static class CentsAdapter extends TypeAdapter<Long> {
+
+    @Override
+    public void write(JsonWriter out, Long cents) throws IOException {
+      if (cents == null || cents == NO_VALUE) {
+        out.nullValue();
+      } else {
+        out.value(BigDecimal.valueOf(cents, 2));
+      }
+    }
+
+    @Override
+    public Long read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      String amount = in.nextString();
+      try {
+        return new BigDecimal(amount).movePointRight(2).longValueExact();
+      } catch (ArithmeticException | NumberFormatException e) {
+        throw new IOException("Not an amount in whole cents: " + amount, e);
+      }
+    }
+  }
 }
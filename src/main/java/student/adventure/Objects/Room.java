@@ -11,6 +11,19 @@ public class Room {
   private Map<String, String> directions;
   private String[] requirements;
 
+  public Room() {
+  }
+
+  public Room(String name, String description, String type, Map<String, Item> items,
+      Map<String, String> directions, String[] requirements) {
+    this.name = name;
+    this.description = description;
+    this.type = type;
+    this.items = items;
+    this.directions = directions;
+    this.requirements = requirements;
+  }
+
   public String[] getRequirements() {
     return requirements;
   }
@@ -0,0 +1,23 @@
+package student.adventure.Objects;
+
+public enum RoomType {
+  ROOM,
+  STORE,
+  WIN;
+
+  /**
+   * Returns the type named by a room's "type" field. Unknown types behave like ordinary rooms.
+   *
+   * @param type
+   * @return
+   */
+  public static RoomType of(String type) {
+    if ("store".equals(type)) {
+      return STORE;
+    }
+    if ("win".equals(type)) {
+      return WIN;
+    }
+    return ROOM;
+  }
+}
@@ -0,0 +1,44 @@
+package student.adventure;
+
+import java.util.Arrays;
+
+/**
+ * Helpers for open addressing tables keyed by ids that are never negative, such as room ids. Keys
+ * are spread over a power of two table by Fibonacci hashing, so consecutive ids land far apart,
+ * and collisions are resolved by probing the following slots.
+ */
+final class OpenAddressing {
+
+  /**
+   * Key of a slot that holds nothing
+   */
+  static final int EMPTY = -1;
+
+  private OpenAddressing() {
+  }
+
+  /**
+   * Returns the first slot to probe for the given key in a table with the given mask, one less
+   * than its power of two length
+   *
+   * @param key
+   * @param mask
+   * @return
+   */
+  static int slot(int key, int mask) {
+    int hash = key * 0x9E3779B9;
+    return (hash ^ hash >>> 16) & mask;
+  }
+
+  /**
+   * Returns a table of keys of the given length with every slot empty
+   *
+   * @param length
+   * @return
+   */
+  static int[] empty(int length) {
+    int[] keys = new int[length];
+    Arrays.fill(keys, EMPTY);
+    return keys;
+  }
+}
@@ -0,0 +1,114 @@
+package student.adventure;
+
+import student.adventure.Objects.Direction;
+
+/**
+ * Every outcome an action can have, with its State and the template of its message. Templates
+ * hold up to two %s placeholders for the arguments of a Result; outcomes whose arguments need more
+ * than their text rendered format them themselves.
+ */
+enum Outcome {
+  // Movement
+  MOVED(State.SUCCESS, ""),
+  NO_SUCH_DIRECTION(State.FAILURE, "You can't go \"%s\"!"),
+  MISSING_REQUIREMENTS(State.FAILURE, "You need the following items to enter this room: %s"),
+  WON(State.VICTORY, "%s"),
+
+  // Items
+  TAKEN(State.SUCCESS, "%s"),
+  NO_ITEM_IN_ROOM(State.FAILURE, "There is no item \"%s\" in the room!"),
+  DROPPED(State.SUCCESS, ""),
+  NOT_IN_INVENTORY(State.FAILURE, "You do not have \"%s\" in your inventory!"),
+  ALREADY_IN_ROOM(State.FAILURE, "The item \"%s\" is already in this room!"),
+  INSPECTED(State.FAILURE, "%s"),
+
+  // Store
+  MUST_PURCHASE(State.FAILURE, "You must purchase this item!"),
+  CANNOT_DROP_IN_STORE(State.FAILURE, "You can't drop this item here!"),
+  SELL_OUTSIDE_STORE(State.FAILURE, "You must be a in a store to sell items!"),
+  BUY_OUTSIDE_STORE(State.FAILURE, "You must be a in a store to buy items!"),
+  NOT_FOR_SALE(State.FAILURE, "\"%s\" is not for sale!"),
+  NOT_ENOUGH_MONEY(State.FAILURE, "You don't have enough money!"),
+  TRANSACTION_SUCCESSFUL(State.SUCCESS, "Transaction successful!"),
+  MONEY(State.SUCCESS, "You have %s.") {
+    @Override
+    void appendArgument(StringBuilder buffer, Object argument) {
+      Helper.appendMoney(buffer, (Long) argument);
+    }
+  },
+
+  // Routes
+  NO_SUCH_ROOM(State.FAILURE, "There is no room called \"%s\"!"),
+  ALREADY_THERE(State.FAILURE, "You are already in %s!"),
+  NO_ROUTE(State.FAILURE, "You can't get to %s from here!"),
+  ROUTE(State.SUCCESS, "Route to %s %s") {
+    @Override
+    void appendArgument(StringBuilder buffer, Object argument) {
+      if (!(argument instanceof Direction[])) {
+        super.appendArgument(buffer, argument);
+        return;
+      }
+      Direction[] route = (Direction[]) argument;
+      buffer.append('(').append(route.length).append(route.length == 1 ? " move): " : " moves): ");
+      for (int i = 0; i < route.length; i++) {
+        buffer.append(i == 0 ? "" : ", ").append(route[i].getKey());
+      }
+    }
+  },
+
+  // Saved games
+  SAVED(State.SUCCESS, "Game saved as \"%s\"."),
+  INVALID_SAVE_NAME(State.FAILURE, "\"%s\" is not a valid save name!"),
+  SAVE_FAILED(State.FAILURE, "The game could not be saved: %s"),
+  LOADED(State.SUCCESS, ""),
+  NO_SUCH_SAVE(State.FAILURE, "There is no saved game \"%s\"!"),
+  LOAD_FAILED(State.FAILURE, "The game could not be loaded: %s"),
+  SHARED_WORLD(State.FAILURE, "Games in a shared world cannot be saved or loaded!"),
+
+  // Rendered views and the rest
+  ROOM(State.SUCCESS, "%s"),
+  INVENTORY(State.SUCCESS, "%s"),
+  QUIT(State.SUCCESS, ""),
+  UNKNOWN_COMMAND(State.FAILURE, "I don't quite understand \"%s\"!");
+
+  private final State state;
+  private final String template;
+
+  Outcome(State state, String template) {
+    this.state = state;
+    this.template = template;
+  }
+
+  State getState() {
+    return state;
+  }
+
+  /**
+   * Returns the message of this outcome with the given arguments filled in
+   *
+   * @param first
+   * @param second
+   * @return
+   */
+  String format(Object first, Object second) {
+    int placeholder = template.indexOf("%s");
+    if (placeholder < 0) {
+      return template;
+    }
+    StringBuilder buffer = new StringBuilder(template.length() + 32);
+    int start = 0;
+    Object argument = first;
+    while (placeholder >= 0) {
+      buffer.append(template, start, placeholder);
+      appendArgument(buffer, argument);
+      argument = second;
+      start = placeholder + 2;
+      placeholder = template.indexOf("%s", start);
+    }
+    return buffer.append(template, start, template.length()).toString();
+  }
+
+  void appendArgument(StringBuilder buffer, Object argument) {
+    buffer.append(argument);
+  }
+}
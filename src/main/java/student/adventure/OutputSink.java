@@ -0,0 +1,33 @@
+package student.adventure;
+
+/**
+ * Destination for game output. Writes are buffered until flush, which the game loop calls once
+ * per command, so a command costs one write to the underlying device however many lines it prints.
+ */
+public interface OutputSink {
+
+  /**
+   * Buffers the given text
+   *
+   * @param text
+   * @return this sink
+   */
+  OutputSink print(CharSequence text);
+
+  /**
+   * Buffers the given text followed by a line break
+   *
+   * @param text
+   * @return this sink
+   */
+  default OutputSink println(CharSequence text) {
+    return print(text).print("\n");
+  }
+
+  /**
+   * Writes out everything buffered so far
+   *
+   * @throws java.io.UncheckedIOException if the output cannot be written
+   */
+  void flush();
+}
@@ -0,0 +1,289 @@
+package student.adventure;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import student.adventure.Objects.Direction;
+import student.adventure.Objects.Item;
+import student.adventure.Objects.Room;
+import student.adventure.Objects.RoomType;
+
+/**
+ * Pages rooms of a compiled world in on demand. Rooms are assembled from the file the first time
+ * they are needed and kept in a bounded cache, and the rooms next to each visited room are
+ * assembled ahead of time in the background. Descriptions are never cached: they are read from
+ * the file when a room is rendered. Per-room indexes built later, such as the route index, are
+ * kept off the heap, so heap use is bounded by the cache capacity however large the world is.
+ *
+ * Each room can only be cached in one slot, picked by its id, so lookups never lock and eviction
+ * is only roughly least recently used. Rooms to prefetch are queued in a fixed ring that one
+ * reusable task drains, so visiting a room allocates nothing; when the prefetcher falls behind,
+ * the oldest requests are dropped.
+ */
+public class PagedWorld extends World implements Closeable {
+
+  public static final int DEFAULT_CAPACITY = 4096;
+  static final int PREFETCH_QUEUE = 1024;
+
+  private final MappedWorld source;
+  private final AtomicReferenceArray<CachedRoom> cache;
+  private final Executor prefetcher;
+  private final ExecutorService ownPrefetcher;
+
+  // Requested rooms are stored as id + 1, so 0 marks a free or taken slot
+  private final AtomicIntegerArray requests = new AtomicIntegerArray(PREFETCH_QUEUE);
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicBoolean draining = new AtomicBoolean();
+  private final Runnable drain = this::drainPrefetches;
+  private long drained;
+  private volatile boolean closed;
+
+  /**
+   * Constructor to page rooms of the given world with the default capacity and a background
+   * prefetch thread, which is stopped when the world is closed
+   *
+   * @param source
+   */
+  public PagedWorld(MappedWorld source) {
+    this(source, DEFAULT_CAPACITY, backgroundPrefetcher(), true);
+  }
+
+  /**
+   * Constructor to page rooms of the given world
+   *
+   * @param source
+   * @param capacity maximum number of rooms kept in memory, rounded up to a power of two
+   * @param prefetcher runs the assembly of neighbouring rooms; it must run each task it accepts,
+   *     or throw RejectedExecutionException
+   */
+  public PagedWorld(MappedWorld source, int capacity, Executor prefetcher) {
+    this(source, capacity, prefetcher, false);
+  }
+
+  private PagedWorld(MappedWorld source, int capacity, Executor prefetcher, boolean owned) {
+    super(source.getConfiguration());
+    this.source = source;
+    this.prefetcher = prefetcher;
+    this.ownPrefetcher = owned ? (ExecutorService) prefetcher : null;
+    this.cache = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(1, capacity - 1))
+        << 1);
+  }
+
+  @Override
+  public Room getRoom(int roomId) {
+    Room room = cached(roomId);
+    if (room == null) {
+      room = load(roomId);
+    }
+    prefetchNeighbours(roomId);
+    return room;
+  }
+
+  /**
+   * Returns the number of rooms currently held in memory
+   *
+   * @return
+   */
+  public int cachedRooms() {
+    int rooms = 0;
+    for (int slot = 0; slot < cache.length(); slot++) {
+      if (cache.get(slot) != null) {
+        rooms++;
+      }
+    }
+    return rooms;
+  }
+
+  /**
+   * Checks if the given room is held in memory
+   *
+   * @param roomId
+   * @return
+   */
+  public boolean isCached(int roomId) {
+    return cached(roomId) != null;
+  }
+
+  /**
+   * Stops prefetching and the background prefetch thread this world started, if any. Rooms can
+   * still be paged in afterwards, just no longer ahead of time.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (ownPrefetcher != null) {
+      ownPrefetcher.shutdownNow();
+    }
+  }
+
+  @Override
+  protected boolean keepsIndexesOffHeap() {
+    return true;
+  }
+
+  private Room cached(int roomId) {
+    CachedRoom cached = cache.get(slot(roomId));
+    return cached != null && cached.roomId == roomId ? cached : null;
+  }
+
+  /**
+   * Assembles a room without its description and caches it
+   */
+  private Room load(int roomId) {
+    CachedRoom room = new CachedRoom(this, roomId, source.getRoom(roomId, false));
+    cache.set(slot(roomId), room);
+    return room;
+  }
+
+  private int slot(int roomId) {
+    return roomId & (cache.length() - 1);
+  }
+
+  private void prefetchNeighbours(int roomId) {
+    if (closed) {
+      return;
+    }
+    boolean queued = false;
+    for (Direction direction : Direction.values()) {
+      int neighbour = source.getExit(roomId, direction);
+      if (neighbour != NO_ROOM && !isCached(neighbour)) {
+        requests.set((int) (requested.getAndIncrement() & (PREFETCH_QUEUE - 1)), neighbour + 1);
+        queued = true;
+      }
+    }
+    if (queued && draining.compareAndSet(false, true)) {
+      try {
+        prefetcher.execute(drain);
+      } catch (RejectedExecutionException e) {
+        // Let a later visit try again, or the prefetcher would never be asked again
+        draining.set(false);
+      }
+    }
+  }
+
+  /**
+   * Assembles every queued room that is not cached yet. Only one drain runs at a time.
+   */
+  private void drainPrefetches() {
+    do {
+      long end = requested.get();
+      drained = Math.max(drained, end - PREFETCH_QUEUE);
+      for (; drained < end; drained++) {
+        int room = requests.getAndSet((int) (drained & (PREFETCH_QUEUE - 1)), 0) - 1;
+        if (room != NO_ROOM && !isCached(room)) {
+          load(room);
+        }
+      }
+      draining.set(false);
+
+      // Keep going if requests came in after the last look and no other drain took them
+    } while (drained != requested.get() && draining.compareAndSet(false, true));
+  }
+
+  /**
+   * Returns a single daemon thread. Only one drain is ever waiting, so its queue of one only
+   * rejects drains once it is shut down.
+   */
+  private static ExecutorService backgroundPrefetcher() {
+    return new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(1), runnable -> {
+          Thread thread = new Thread(runnable, "room-prefetch");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  @Override
+  public String getDescription(int roomId) {
+    return source.getDescription(roomId);
+  }
+
+  @Override
+  public int getRoomId(String roomKey) {
+    return source.getRoomId(roomKey);
+  }
+
+  @Override
+  public String getRoomKey(int roomId) {
+    return source.getRoomKey(roomId);
+  }
+
+  @Override
+  public int getRoomCount() {
+    return source.getRoomCount();
+  }
+
+  @Override
+  public int getExit(int roomId, Direction direction) {
+    return source.getExit(roomId, direction);
+  }
+
+  @Override
+  public RoomType getType(int roomId) {
+    return source.getType(roomId);
+  }
+
+  @Override
+  public int getItemId(CharSequence name) {
+    return source.getItemId(name);
+  }
+
+  @Override
+  public Item getItem(int itemId) {
+    return source.getItem(itemId);
+  }
+
+  @Override
+  public String getItemName(int itemId) {
+    return source.getItemName(itemId);
+  }
+
+  @Override
+  public int getItemCount() {
+    return source.getItemCount();
+  }
+
+  @Override
+  public int[] getRoomItems(int roomId) {
+    return source.getRoomItems(roomId);
+  }
+
+  @Override
+  public boolean hasItem(int roomId, int itemId) {
+    return source.hasItem(roomId, itemId);
+  }
+
+  @Override
+  public boolean meetsRequirements(int roomId, Inventory inventory) {
+    return source.meetsRequirements(roomId, inventory);
+  }
+
+  /**
+   * Cached room whose description is read from the world file each time it is asked for
+   */
+  private static class CachedRoom extends Room {
+
+    private final World world;
+    private final int roomId;
+
+    private CachedRoom(World world, int roomId, Room room) {
+      super(room.getName(), null, room.getType(), room.getItems(), room.getDirections(),
+          room.getRequirements());
+      this.world = world;
+      this.roomId = roomId;
+    }
+
+    @Override
+    public String getDescription() {
+      return world.getDescription(roomId);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package student.adventure;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.websockets.DataFrame;
+import org.glassfish.grizzly.websockets.ProtocolHandler;
+import org.glassfish.grizzly.websockets.SimpleWebSocket;
+import org.glassfish.grizzly.websockets.WebSocket;
+import org.glassfish.grizzly.websockets.WebSocketApplication;
+import org.glassfish.grizzly.websockets.WebSocketEngine;
+import org.glassfish.grizzly.websockets.WebSocketListener;
+
+/**
+ * Interactive play over a WebSocket at /play. The client sends command lines as typed, one per
+ * text message, and gets back each command's output as the console would print it, as one text
+ * message. Connecting to /play starts a new session that ends when the socket closes;
+ * /play/{id} attaches to an existing session, e.g. one started over HTTP, and leaves it running.
+ * The socket is closed after the player wins or quits.
+ *
+ * Grizzly keeps a single registry of WebSocket applications per JVM, so one application serves
+ * every server and finds the sessions of each socket by the port it connected to.
+ */
+final class PlayApplication extends WebSocketApplication {
+
+  static final String PATH = "/play";
+  static final int POLICY_VIOLATION = 1008;
+
+  private static final PlayApplication INSTANCE = new PlayApplication();
+  private static boolean registered;
+
+  private final Map<Integer, SessionManager> servers = new ConcurrentHashMap<>();
+
+  private PlayApplication() {
+  }
+
+  /**
+   * Serves WebSocket play for the given sessions to sockets connecting to the given port
+   *
+   * @param port
+   * @param sessions
+   */
+  static synchronized void serve(int port, SessionManager sessions) {
+    INSTANCE.servers.put(port, sessions);
+    if (!registered) {
+      WebSocketEngine.getEngine().register("", PATH + "/*", INSTANCE);
+      registered = true;
+    }
+  }
+
+  @Override
+  public WebSocket createSocket(ProtocolHandler handler, HttpRequestPacket request,
+      WebSocketListener... listeners) {
+    String path = request.getRequestURI();
+    String id = path.length() > PATH.length() + 1 ? path.substring(PATH.length() + 1) : null;
+    return new PlayerSocket(handler, servers.get(request.getLocalPort()), id, listeners);
+  }
+
+  @Override
+  public void onConnect(WebSocket socket) {
+    // Sockets are not tracked here, since nothing is broadcast to every player
+    PlayerSocket player = (PlayerSocket) socket;
+    if (!player.attach()) {
+      socket.close(POLICY_VIOLATION, "No session \"" + player.requestedId + "\"");
+    }
+  }
+
+  @Override
+  public void onMessage(WebSocket socket, String text) {
+    ((PlayerSocket) socket).perform(text);
+  }
+
+  @Override
+  public void onClose(WebSocket socket, DataFrame frame) {
+    ((PlayerSocket) socket).detach();
+    socket.close();
+  }
+
+  /**
+   * One player's connection and the session it plays
+   */
+  private static final class PlayerSocket extends SimpleWebSocket {
+
+    private final SessionManager sessions;
+    private final String requestedId;
+    private final WebSocketSink out;
+    private Session session;
+    private boolean owned;
+
+    private PlayerSocket(ProtocolHandler handler, SessionManager sessions, String requestedId,
+        WebSocketListener... listeners) {
+      super(handler, listeners);
+      this.sessions = sessions;
+      this.requestedId = requestedId;
+      this.out = new WebSocketSink(this);
+    }
+
+    /**
+     * Starts or finds the session to play and sends its opening output
+     *
+     * @return false if there is no such session
+     */
+    private synchronized boolean attach() {
+      if (sessions == null) {
+        return false;
+      }
+      if (requestedId == null) {
+        session = sessions.create();
+        owned = true;
+        out.println(sessions.getWorld().getConfiguration().getInitializationText()).println("");
+      } else {
+        session = sessions.get(requestedId);
+        if (session == null) {
+          return false;
+        }
+      }
+      IO.render(session.examine(), sessions.getWorld().getConfiguration(), out);
+      out.flush();
+      return true;
+    }
+
+    private synchronized void perform(String command) {
+      if (session == null) {
+        return;
+      }
+      IO.render(session.perform(command), sessions.getWorld().getConfiguration(), out);
+      out.flush();
+      if (session.isFinished()) {
+        close(NORMAL_CLOSURE, "Game over");
+      }
+    }
+
+    private synchronized void detach() {
+      if (owned && session != null) {
+        sessions.remove(session.getId());
+      }
+      session = null;
+    }
+  }
+}
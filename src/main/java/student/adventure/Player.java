@@ -3,26 +3,47 @@ package student.adventure;
 public class Player {
 
   private Inventory inventory;
-  private Float money;
 
-  Player() {
-    inventory = new Inventory();
-    money = 0F;
+  // Whole cents, so balances stay exact across any number of trades. Only the player's own game
+  // changes it, and store trades do so under the store room's lock.
+  private long money;
+
+  Player(World world) {
+    inventory = new Inventory(world);
   }
 
   public Inventory getInventory() {
     return inventory;
   }
 
-  public Float getMoney() {
+  /**
+   * Returns the player's money in cents
+   *
+   * @return
+   */
+  public long getMoney() {
     return money;
   }
 
-  public void addMoney(Float add) {
-    this.money += add;
+  public void addMoney(long cents) {
+    this.money += cents;
+  }
+
+  public void subtractMoney(long cents) {
+    this.money -= cents;
   }
 
-  public void subtractMoney(Float subtract) {
-    this.money -= subtract;
+  /**
+   * Takes the given amount from the player's money if they have that much
+   *
+   * @param cents
+   * @return whether the money was taken
+   */
+  public boolean spend(long cents) {
+    if (money < cents) {
+      return false;
+    }
+    this.money -= cents;
+    return true;
   }
 }
@@ -6,20 +6,89 @@ enum State {
   VICTORY
 }
 
+/**
+ * The Outcome of an action and the arguments of its message. Messages are only formatted when
+ * asked for, so callers that only look at the State never build them, and outcomes without
+ * arguments share one Result each.
+ */
 public class Result {
+
+  private static final Result[] SHARED = new Result[Outcome.values().length];
+
+  static {
+    for (Outcome outcome : Outcome.values()) {
+      SHARED[outcome.ordinal()] = new Result(outcome, null, null);
+    }
+  }
+
+  private final Outcome outcome;
+  private final Object first;
+  private final Object second;
   private String message;
-  private State state;
 
-  Result(String message, State state) {
-    this.message = message;
-    this.state = state;
+  private Result(Outcome outcome, Object first, Object second) {
+    this.outcome = outcome;
+    this.first = first;
+    this.second = second;
+  }
+
+  /**
+   * Returns the shared Result of an outcome without arguments
+   *
+   * @param outcome
+   * @return
+   */
+  static Result of(Outcome outcome) {
+    return SHARED[outcome.ordinal()];
+  }
+
+  /**
+   * Returns a Result of the given outcome and argument
+   *
+   * @param outcome
+   * @param argument
+   * @return
+   */
+  static Result of(Outcome outcome, Object argument) {
+    return new Result(outcome, retain(argument), null);
+  }
+
+  /**
+   * Returns a Result of the given outcome and arguments
+   *
+   * @param outcome
+   * @param first
+   * @param second
+   * @return
+   */
+  static Result of(Outcome outcome, Object first, Object second) {
+    return new Result(outcome, retain(first), retain(second));
+  }
+
+  /**
+   * Copies arguments that may change before the message is formatted, such as the CharSlice a
+   * parser reuses for every command
+   */
+  private static Object retain(Object argument) {
+    return argument instanceof CharSequence && !(argument instanceof String)
+        ? argument.toString() : argument;
   }
 
   public String getMessage() {
-    return message;
+    // Racing threads format the same String, so there is no need to synchronize
+    String formatted = message;
+    if (formatted == null) {
+      formatted = outcome.format(first, second);
+      message = formatted;
+    }
+    return formatted;
   }
 
   public State getState() {
-    return state;
+    return outcome.getState();
+  }
+
+  Outcome getOutcome() {
+    return outcome;
   }
 }
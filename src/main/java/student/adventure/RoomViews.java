@@ -0,0 +1,64 @@
+package student.adventure;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded cache of rendered rooms in their starting state, shared by every game on a World. Rooms
+ * a player has changed are rendered from that player's WorldState instead, so entries here never
+ * need to be invalidated.
+ *
+ * Each room can only be cached in one slot, picked by its id, and caching a room replaces whatever
+ * room was in its slot. Eviction is therefore only roughly least recently used, but lookups never
+ * lock or write, so every game can look up rooms at once.
+ */
+class RoomViews {
+
+  static final int DEFAULT_CAPACITY = 1024;
+
+  private final AtomicReferenceArray<View> views;
+
+  /**
+   * Constructor to instantiate a cache holding at most the given number of rooms, rounded up to a
+   * power of two
+   *
+   * @param capacity
+   */
+  RoomViews(int capacity) {
+    this.views = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+  }
+
+  /**
+   * Returns the rendered view of the given room, or null if it is not cached
+   *
+   * @param roomId
+   * @return
+   */
+  String get(int roomId) {
+    View view = views.get(slot(roomId));
+    return view != null && view.roomId == roomId ? view.text : null;
+  }
+
+  void put(int roomId, String text) {
+    // Other threads may see the view a little later, which only costs them a render
+    views.lazySet(slot(roomId), new View(roomId, text));
+  }
+
+  int getCapacity() {
+    return views.length();
+  }
+
+  private int slot(int roomId) {
+    return roomId & (views.length() - 1);
+  }
+
+  private static final class View {
+
+    private final int roomId;
+    private final String text;
+
+    private View(int roomId, String text) {
+      this.roomId = roomId;
+      this.text = text;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package student.adventure;
+
+import static student.adventure.OpenAddressing.EMPTY;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how many times each room is entered, across every game of a world. Each thread counts
+ * into its own stripe, a fixed open addressing table of room ids claimed by compare-and-set, so
+ * players moving at the same time rarely touch the same memory and counting a visit never locks
+ * or allocates. Tables are sized once, so memory stays bounded however large the world is: once a
+ * stripe has no room left for a new room id, that room's visits are counted as untracked instead.
+ * Reads add the stripes up.
+ */
+final class RoomVisits {
+
+  static final int ROOMS_PER_STRIPE = 2048;
+  static final int MAX_PROBES = 32;
+
+  private final Stripe[] stripes = new Stripe[Stripes.COUNT];
+
+  RoomVisits() {
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Counts one visit to the given room
+   *
+   * @param roomId
+   */
+  void increment(int roomId) {
+    stripes[Stripes.current()].increment(roomId);
+  }
+
+  /**
+   * Returns how many times the given room has been entered, not counting untracked visits
+   *
+   * @param roomId
+   * @return
+   */
+  long get(int roomId) {
+    long total = 0;
+    for (Stripe stripe : stripes) {
+      int slot = stripe.find(roomId);
+      if (slot != EMPTY) {
+        total += stripe.counts.get(slot);
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Returns the number of visits to rooms that did not fit in the tables
+   *
+   * @return
+   */
+  long getUntracked() {
+    long total = 0;
+    for (Stripe stripe : stripes) {
+      total += stripe.counts.get(ROOMS_PER_STRIPE);
+    }
+    return total;
+  }
+
+  /**
+   * Returns the ids of every room entered so far and their counts, as pairs of (room id, count)
+   * in no particular order
+   *
+   * @return
+   */
+  long[][] getCounts() {
+    Map<Integer, long[]> merged = new HashMap<>();
+    for (Stripe stripe : stripes) {
+      for (int slot = 0; slot < ROOMS_PER_STRIPE; slot++) {
+        int roomId = stripe.rooms.get(slot);
+        if (roomId != EMPTY) {
+          long[] room = merged.get(roomId);
+          if (room == null) {
+            merged.put(roomId, room = new long[] {roomId, 0});
+          }
+          room[1] += stripe.counts.get(slot);
+        }
+      }
+    }
+    return merged.values().toArray(new long[0][]);
+  }
+
+  /**
+   * Open addressing table of room ids to counts. A slot's room id is set once and never cleared;
+   * the count after the last slot holds the untracked visits.
+   */
+  private static final class Stripe {
+
+    private final AtomicIntegerArray rooms = new AtomicIntegerArray(ROOMS_PER_STRIPE);
+    private final AtomicLongArray counts = new AtomicLongArray(ROOMS_PER_STRIPE + 1);
+
+    private Stripe() {
+      for (int slot = 0; slot < ROOMS_PER_STRIPE; slot++) {
+        rooms.set(slot, EMPTY);
+      }
+    }
+
+    private void increment(int roomId) {
+      int slot = OpenAddressing.slot(roomId, ROOMS_PER_STRIPE - 1);
+      for (int probe = 0; probe < MAX_PROBES; probe++) {
+        int found = rooms.get(slot);
+        if (found == EMPTY && rooms.compareAndSet(slot, EMPTY, roomId)) {
+          found = roomId;
+        } else if (found == EMPTY) {
+          // Another thread just claimed the slot, maybe for this very room
+          found = rooms.get(slot);
+        }
+        if (found == roomId) {
+          counts.getAndIncrement(slot);
+          return;
+        }
+        slot = (slot + 1) & (ROOMS_PER_STRIPE - 1);
+      }
+      counts.getAndIncrement(ROOMS_PER_STRIPE);
+    }
+
+    /**
+     * Returns the slot holding the given room, or EMPTY if it has none
+     */
+    private int find(int roomId) {
+      int slot = OpenAddressing.slot(roomId, ROOMS_PER_STRIPE - 1);
+      for (int probe = 0; probe < MAX_PROBES; probe++) {
+        int found = rooms.get(slot);
+        if (found == roomId) {
+          return slot;
+        }
+        if (found == EMPTY) {
+          return EMPTY;
+        }
+        slot = (slot + 1) & (ROOMS_PER_STRIPE - 1);
+      }
+      return EMPTY;
+    }
+  }
+}
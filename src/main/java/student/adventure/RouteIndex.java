@@ -0,0 +1,404 @@
+package student.adventure;
+
+import static student.adventure.OpenAddressing.EMPTY;
+import static student.adventure.OpenAddressing.empty;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import student.adventure.Objects.Direction;
+
+/**
+ * Shortest routes between rooms. The index keeps, for a few landmark rooms spread across the
+ * world, the distance from and to every room. Those distances bound the distance between any two
+ * rooms from below in constant time, which steers an A* search straight along the route instead
+ * of flooding the world around the start. Rooms whose requirements the player does not meet are
+ * never entered, so routes are always walkable with the player's current inventory.
+ *
+ * All-pairs next hops would answer in constant time but take memory quadratic in the rooms, and
+ * whether a room can be entered depends on each player's inventory, so this trades a search that
+ * only touches rooms near the route for an index linear in the size of the world. For worlds that
+ * are only paged into the heap, the index and the tables used to build it are kept off the heap.
+ */
+class RouteIndex {
+
+  static final int LANDMARKS = 8;
+  static final int MAX_POOLED_ROOMS = 1 << 12;
+
+  private static final int UNREACHABLE = Integer.MAX_VALUE / 4;
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  private final World world;
+  private final int rooms;
+  private final boolean offHeap;
+  private final IntBuffer[] fromLandmark;
+  private final IntBuffer[] toLandmark;
+  private final IntBuffer nameSlots;
+  private final AtomicReferenceArray<Search> searches = new AtomicReferenceArray<>(Stripes.COUNT);
+
+  /**
+   * Constructor to index the room graph of the given world
+   *
+   * @param world
+   * @param offHeap whether to keep the index and the tables used to build it off the heap
+   */
+  RouteIndex(World world, boolean offHeap) {
+    this.world = world;
+    this.rooms = world.getRoomCount();
+    this.offHeap = offHeap;
+
+    // Reverse the exits into a compact list of the rooms leading into each room
+    IntBuffer offsets = ints(rooms + 1, 0);
+    for (int room = 0; room < rooms; room++) {
+      for (Direction direction : DIRECTIONS) {
+        int target = world.getExit(room, direction);
+        if (target != World.NO_ROOM) {
+          offsets.put(target + 1, offsets.get(target + 1) + 1);
+        }
+      }
+    }
+    for (int room = 0; room < rooms; room++) {
+      offsets.put(room + 1, offsets.get(room + 1) + offsets.get(room));
+    }
+    IntBuffer sources = ints(offsets.get(rooms), 0);
+    IntBuffer filled = ints(rooms, 0);
+    for (int room = 0; room < rooms; room++) {
+      for (Direction direction : DIRECTIONS) {
+        int target = world.getExit(room, direction);
+        if (target != World.NO_ROOM) {
+          int slot = offsets.get(target) + filled.get(target);
+          filled.put(target, filled.get(target) + 1);
+          sources.put(slot, room);
+        }
+      }
+    }
+
+    // Pick each landmark as far as possible from those already picked, starting at the start
+    int count = Math.min(LANDMARKS, rooms);
+    fromLandmark = new IntBuffer[count];
+    toLandmark = new IntBuffer[count];
+    IntBuffer nearest = filled;
+    IntBuffer queue = ints(rooms, 0);
+    for (int room = 0; room < rooms; room++) {
+      nearest.put(room, UNREACHABLE);
+    }
+    int landmark = world.getStartingRoom();
+    for (int l = 0; l < count; l++) {
+      fromLandmark[l] = distances(landmark, null, null, queue);
+      toLandmark[l] = distances(landmark, offsets, sources, queue);
+      int farthest = landmark;
+      for (int room = 0; room < rooms; room++) {
+        int distance = Math.min(nearest.get(room), fromLandmark[l].get(room));
+        nearest.put(room, distance);
+        if (distance != UNREACHABLE && distance > nearest.get(farthest)) {
+          farthest = room;
+        }
+      }
+      landmark = farthest;
+    }
+
+    // Index room keys ignoring case, since commands arrive lowercased
+    nameSlots = ints(Integer.highestOneBit(Math.max(2, rooms * 2) - 1) << 1, World.NO_ROOM);
+    int mask = nameSlots.capacity() - 1;
+    for (int room = 0; room < rooms; room++) {
+      int slot = NameIndex.hash(world.getRoomKey(room)) & mask;
+      while (nameSlots.get(slot) != World.NO_ROOM) {
+        slot = (slot + 1) & mask;
+      }
+      nameSlots.put(slot, room);
+    }
+
+  }
+
+  /**
+   * Returns the id of the room with the given key ignoring case, or NO_ROOM if there is none
+   *
+   * @param name
+   * @return
+   */
+  int findRoom(CharSequence name) {
+    int mask = nameSlots.capacity() - 1;
+    for (int slot = NameIndex.hash(name) & mask; nameSlots.get(slot) != World.NO_ROOM;
+        slot = (slot + 1) & mask) {
+      String key = world.getRoomKey(nameSlots.get(slot));
+      if (key.length() == name.length() && equalsIgnoreCase(key, name)) {
+        return nameSlots.get(slot);
+      }
+    }
+    return World.NO_ROOM;
+  }
+
+  /**
+   * Returns a lower bound on the number of moves between two rooms ignoring requirements, or
+   * Integer.MAX_VALUE if the landmarks show there is no way at all
+   *
+   * @param from
+   * @param to
+   * @return
+   */
+  int estimate(int from, int to) {
+    int bound = 0;
+    for (int l = 0; l < fromLandmark.length; l++) {
+      IntBuffer fromDistances = fromLandmark[l];
+      IntBuffer toDistances = toLandmark[l];
+
+      // The landmark reaches the start but not the goal, or the goal reaches it but the start
+      // does not: either way no route can exist
+      if (fromDistances.get(from) != UNREACHABLE && fromDistances.get(to) == UNREACHABLE
+          || toDistances.get(to) != UNREACHABLE && toDistances.get(from) == UNREACHABLE) {
+        return Integer.MAX_VALUE;
+      }
+      if (fromDistances.get(from) != UNREACHABLE && fromDistances.get(to) != UNREACHABLE) {
+        bound = Math.max(bound, fromDistances.get(to) - fromDistances.get(from));
+      }
+      if (toDistances.get(from) != UNREACHABLE && toDistances.get(to) != UNREACHABLE) {
+        bound = Math.max(bound, toDistances.get(from) - toDistances.get(to));
+      }
+    }
+    return bound;
+  }
+
+  /**
+   * Returns the directions of a shortest route between two rooms that only enters rooms whose
+   * requirements the given inventory meets, or null if there is none
+   *
+   * @param from
+   * @param to
+   * @param inventory
+   * @return
+   */
+  Direction[] route(int from, int to, Inventory inventory) {
+    if (from == to) {
+      return new Direction[0];
+    }
+    if (estimate(from, to) == Integer.MAX_VALUE) {
+      return null;
+    }
+
+    // Borrow the scratch space pooled for this thread's stripe, or make new space if another
+    // thread has it, and only pool it again if the search stayed small
+    int stripe = Stripes.current();
+    Search search = searches.getAndSet(stripe, null);
+    if (search == null) {
+      search = new Search();
+    }
+    Direction[] route = search.run(from, to, inventory);
+    if (search.capacity() <= MAX_POOLED_ROOMS) {
+      searches.lazySet(stripe, search);
+    }
+    return route;
+  }
+
+  /**
+   * Breadth-first distances from the given room, or to it when given the reversed exits
+   */
+  private IntBuffer distances(int origin, IntBuffer offsets, IntBuffer sources, IntBuffer queue) {
+    IntBuffer distance = ints(rooms, UNREACHABLE);
+    int head = 0;
+    int tail = 0;
+    distance.put(origin, 0);
+    queue.put(tail++, origin);
+    while (head < tail) {
+      int room = queue.get(head++);
+      int nextDistance = distance.get(room) + 1;
+      if (offsets == null) {
+        for (Direction direction : DIRECTIONS) {
+          int next = world.getExit(room, direction);
+          if (next != World.NO_ROOM && distance.get(next) == UNREACHABLE) {
+            distance.put(next, nextDistance);
+            queue.put(tail++, next);
+          }
+        }
+      } else {
+        for (int i = offsets.get(room); i < offsets.get(room + 1); i++) {
+          int next = sources.get(i);
+          if (distance.get(next) == UNREACHABLE) {
+            distance.put(next, nextDistance);
+            queue.put(tail++, next);
+          }
+        }
+      }
+    }
+    return distance;
+  }
+
+  /**
+   * Returns a table of the given number of ints, all set to the given value, on or off the heap
+   */
+  private IntBuffer ints(int size, int value) {
+    IntBuffer ints = offHeap ? ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder())
+        .asIntBuffer() : IntBuffer.allocate(size);
+    if (value != 0) {
+      for (int i = 0; i < size; i++) {
+        ints.put(i, value);
+      }
+    }
+    return ints;
+  }
+
+  private static boolean equalsIgnoreCase(String key, CharSequence name) {
+    for (int i = 0; i < key.length(); i++) {
+      if (Character.toLowerCase(key.charAt(i)) != Character.toLowerCase(name.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Scratch space for a search, kept in an open addressing table of the rooms the search has
+   * reached so far, so it takes space in the number of rooms near the route rather than in the
+   * size of the world.
+   */
+  private class Search {
+
+    private int[] keys = empty(64);
+    private int[] cost = new int[64];
+    private int[] parent = new int[64];
+    private byte[] via = new byte[64];
+    private boolean[] closed = new boolean[64];
+    private int reached;
+    private long[] heap = new long[64];
+    private int size;
+
+    private Direction[] run(int from, int to, Inventory inventory) {
+      Arrays.fill(keys, EMPTY);
+      reached = 0;
+      size = 0;
+      visit(from, 0, World.NO_ROOM, 0);
+      push(estimate(from, to), from);
+      while (size > 0) {
+        int room = (int) pop();
+        int slot = find(room);
+        if (closed[slot]) {
+          continue;
+        }
+        if (room == to) {
+          return path(to);
+        }
+        closed[slot] = true;
+        int nextCost = cost[slot] + 1;
+        for (Direction direction : DIRECTIONS) {
+          int next = world.getExit(room, direction);
+          if (next == World.NO_ROOM || !world.meetsRequirements(next, inventory)) {
+            continue;
+          }
+          int nextSlot = find(next);
+          if (keys[nextSlot] == EMPTY || nextCost < cost[nextSlot] && !closed[nextSlot]) {
+            int bound = estimate(next, to);
+            if (bound != Integer.MAX_VALUE) {
+              visit(next, nextCost, room, direction.ordinal());
+              push(nextCost + bound, next);
+            }
+          }
+        }
+      }
+      return null;
+    }
+
+    private int capacity() {
+      return Math.max(keys.length, heap.length);
+    }
+
+    private void visit(int room, int roomCost, int from, int direction) {
+      int slot = find(room);
+      if (keys[slot] == EMPTY) {
+        if (reached + 1 > keys.length / 2) {
+          grow();
+          slot = find(room);
+        }
+        keys[slot] = room;
+        reached++;
+      }
+      cost[slot] = roomCost;
+      parent[slot] = from;
+      via[slot] = (byte) direction;
+      closed[slot] = false;
+    }
+
+    private Direction[] path(int to) {
+      Direction[] path = new Direction[cost[find(to)]];
+      for (int room = to, i = path.length - 1; i >= 0; i--) {
+        int slot = find(room);
+        path[i] = DIRECTIONS[via[slot]];
+        room = parent[slot];
+      }
+      return path;
+    }
+
+    /**
+     * Returns the slot holding the given room, or the empty slot it would go in
+     */
+    private int find(int room) {
+      int mask = keys.length - 1;
+      int slot = OpenAddressing.slot(room, mask);
+      while (keys[slot] != EMPTY && keys[slot] != room) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void grow() {
+      int[] oldKeys = keys;
+      int[] oldCost = cost;
+      int[] oldParent = parent;
+      byte[] oldVia = via;
+      boolean[] oldClosed = closed;
+      int length = oldKeys.length * 2;
+      keys = empty(length);
+      cost = new int[length];
+      parent = new int[length];
+      via = new byte[length];
+      closed = new boolean[length];
+      for (int slot = 0; slot < oldKeys.length; slot++) {
+        if (oldKeys[slot] != EMPTY) {
+          int moved = find(oldKeys[slot]);
+          keys[moved] = oldKeys[slot];
+          cost[moved] = oldCost[slot];
+          parent[moved] = oldParent[slot];
+          via[moved] = oldVia[slot];
+          closed[moved] = oldClosed[slot];
+        }
+      }
+    }
+
+    // Binary min-heap of (priority, room) packed into longs
+
+    private void push(int priority, int room) {
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, size * 2);
+      }
+      long entry = (long) priority << 32 | room;
+      int i = size++;
+      while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+        heap[i] = heap[(i - 1) >>> 1];
+        i = (i - 1) >>> 1;
+      }
+      heap[i] = entry;
+    }
+
+    private long pop() {
+      long top = heap[0];
+      long last = heap[--size];
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && heap[child + 1] < heap[child]) {
+          child++;
+        }
+        if (heap[child] >= last) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = last;
+      return top & 0xFFFFFFFFL;
+    }
+  }
+}
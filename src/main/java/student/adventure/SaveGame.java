@@ -0,0 +1,244 @@
+package student.adventure;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Binary format of a saved game. Only what the player changed is saved: their room, money and
+ * inventory, and the items taken from or dropped into each room they changed. Rooms and items are
+ * saved by key and name rather than by id, since ids are only stable for one compiled world, so
+ * saves survive the world being rebuilt or extended. Loading looks up each saved name once, so it
+ * takes time in the size of the save, not of the world.
+ *
+ * <pre>
+ * [int magic][byte version]
+ * [UTF current room][boolean finished][long money in cents]
+ * [varint count][UTF item name]*                                   inventory
+ * [varint count]([UTF room][varint count][UTF item name]*          rooms changed: items added,
+ *                [varint count][UTF item name]*)*                  then items removed
+ * </pre>
+ *
+ * Items and changed rooms missing from the world they are loaded into are skipped; a missing
+ * current room makes the save unusable. Version 1 saves, which held money as a float of dollars,
+ * are still read.
+ */
+final class SaveGame {
+
+  static final int MAGIC = 0x41445653; // "ADVS"
+  static final int VERSION = 2;
+  private static final int FLOAT_MONEY_VERSION = 1;
+
+  /**
+   * Directory the "save" and "load" commands keep games in, unless the adventure.saves system
+   * property names another. Server sessions each keep theirs in a directory of their own inside
+   * it.
+   */
+  static final Path DIRECTORY = Paths.get(System.getProperty("adventure.saves", "saves"));
+  static final String DEFAULT_NAME = "quicksave";
+  static final String EXTENSION = ".sav";
+
+  private static final Pattern NAME = Pattern.compile("[a-z0-9_-]{1,64}");
+
+  private SaveGame() {
+  }
+
+  /**
+   * Returns the file a game saved under the given name is kept in within the given directory, or
+   * null if the name is not a plain name of letters, digits, '-' and '_'
+   *
+   * @param directory
+   * @param name
+   * @return
+   */
+  static Path file(Path directory, String name) {
+    if (!NAME.matcher(name).matches()) {
+      return null;
+    }
+    return directory.resolve(name + EXTENSION);
+  }
+
+  /**
+   * Returns the directory the session with the given id keeps its games in, so players of
+   * different sessions can neither load nor overwrite each other's games
+   *
+   * @param sessionId
+   * @return
+   */
+  static Path directory(String sessionId) {
+    return DIRECTORY.resolve(sessionId);
+  }
+
+  /**
+   * Deletes the games saved in the given directory and the directory itself, if there is one
+   *
+   * @param directory
+   * @throws IOException
+   */
+  static void delete(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    try (DirectoryStream<Path> saves = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+      for (Path save : saves) {
+        Files.deleteIfExists(save);
+      }
+    }
+    Files.deleteIfExists(directory);
+  }
+
+  /**
+   * Returns the saved state of the given game
+   *
+   * @param engine
+   * @return
+   */
+  static byte[] save(GameEngine engine) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try {
+      write(engine, new DataOutputStream(bytes));
+    } catch (IOException e) {
+      throw new AssertionError("Writing to memory cannot fail", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Writes the state of the given game
+   *
+   * @param engine
+   * @param out
+   * @throws IOException
+   */
+  static void write(GameEngine engine, DataOutput out) throws IOException {
+    World world = engine.getWorld();
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeUTF(world.getRoomKey(engine.getCurrentRoomId()));
+    out.writeBoolean(engine.isFinished());
+    out.writeLong(engine.getPlayer().getMoney());
+    writeItems(world, engine.getPlayer().getInventory().getItemIds(), out);
+
+    WorldState state = engine.getWorldState();
+    int[] rooms = state.getChangedRooms();
+    writeVarint(rooms.length, out);
+    for (int roomId : rooms) {
+      out.writeUTF(world.getRoomKey(roomId));
+      writeItems(world, state.getAdded(roomId), out);
+      writeItems(world, state.getRemoved(roomId), out);
+    }
+  }
+
+  /**
+   * Replaces the state of the given game with a saved one. Nothing changes if the save cannot be
+   * read.
+   *
+   * @param in
+   * @param engine
+   * @throws IOException if the save is not in this format, its room no longer exists or the game
+   *     shares its world with other players
+   */
+  static void read(DataInput in, GameEngine engine) throws IOException {
+    World world = engine.getWorld();
+    if (engine.getWorldState().isShared()) {
+      throw new IOException("Saved games cannot be loaded into a shared world");
+    }
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a saved game");
+    }
+    int version = in.readUnsignedByte();
+    if (version != VERSION && version != FLOAT_MONEY_VERSION) {
+      throw new IOException("Unsupported saved game version " + version);
+    }
+
+    String roomKey = in.readUTF();
+    int roomId = world.getRoomId(roomKey);
+    if (roomId == World.NO_ROOM) {
+      throw new IOException("Saved room " + roomKey + " no longer exists");
+    }
+    boolean finished = in.readBoolean();
+    Player player = new Player(world);
+    player.addMoney(version == FLOAT_MONEY_VERSION ? Math.round(in.readFloat() * 100.0)
+        : in.readLong());
+    for (int itemId : readItems(world, in)) {
+      player.getInventory().add(itemId);
+    }
+
+    WorldState state = new WorldState(world);
+    for (int count = readVarint(in); count > 0; count--) {
+      int changed = world.getRoomId(in.readUTF());
+      int[] added = readItems(world, in);
+      int[] removed = readItems(world, in);
+      if (changed == World.NO_ROOM) {
+        continue;
+      }
+      for (int itemId : removed) {
+        state.removeItem(changed, itemId);
+      }
+      for (int itemId : added) {
+        state.addItem(changed, itemId);
+      }
+    }
+
+    engine.restore(roomId, finished, player, state);
+  }
+
+  private static void writeItems(World world, int[] itemIds, DataOutput out) throws IOException {
+    writeVarint(itemIds.length, out);
+    for (int itemId : itemIds) {
+      out.writeUTF(world.getItemName(itemId));
+    }
+  }
+
+  /**
+   * Reads item names and returns the ids of those still in the world
+   */
+  private static int[] readItems(World world, DataInput in) throws IOException {
+    int count = readVarint(in);
+
+    // Grow as names are read, so a corrupt count cannot allocate more than the data holds
+    int[] ids = new int[Math.min(count, 16)];
+    int found = 0;
+    for (int i = 0; i < count; i++) {
+      int itemId = world.getItemId(in.readUTF());
+      if (itemId != World.NO_ITEM && world.getItem(itemId) != null) {
+        if (found == ids.length) {
+          ids = Arrays.copyOf(ids, found * 2);
+        }
+        ids[found++] = itemId;
+      }
+    }
+    return found == ids.length ? ids : Arrays.copyOf(ids, found);
+  }
+
+  private static void writeVarint(int value, DataOutput out) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarint(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (value < 0) {
+          break;
+        }
+        return value;
+      }
+    }
+    throw new IOException("Malformed count in saved game");
+  }
+}
@@ -0,0 +1,291 @@
+package student.adventure;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import student.adventure.Objects.Direction;
+
+/**
+ * A single player's game hosted by the server. Each session owns its own Game Engine and Player,
+ * keeps its saved games apart from other sessions', and commands within one session are applied
+ * one at a time. With a Journal, every command that changes the game is recorded in order so the
+ * session can be rebuilt after a restart.
+ */
+public class Session {
+
+  private final String id;
+  private final GameEngine engine;
+  private final CommandParser parser;
+  private final Journal journal;
+  private final int number;
+  private long sequence;
+
+  /**
+   * Constructor to instantiate a session around its own Game Engine
+   *
+   * @param id
+   * @param engine
+   */
+  Session(String id, GameEngine engine) {
+    this(id, engine, null, -1);
+  }
+
+  /**
+   * Constructor to instantiate a session whose commands are recorded in the given journal under
+   * the given number
+   *
+   * @param id
+   * @param engine
+   * @param journal
+   * @param number
+   */
+  Session(String id, GameEngine engine, Journal journal, int number) {
+    this.id = id;
+    this.engine = engine;
+    this.engine.setSaveDirectory(SaveGame.directory(id));
+    this.parser = new CommandParser();
+    this.journal = journal;
+    this.number = number;
+  }
+
+  /**
+   * Reads a session written by writeSnapshot onto a new game
+   *
+   * @param in
+   * @param engine
+   * @param journal
+   * @return
+   * @throws IOException
+   */
+  static Session readSnapshot(DataInput in, GameEngine engine, Journal journal)
+      throws IOException {
+    int number = in.readInt();
+    Session session = new Session(in.readUTF(), engine, journal, number);
+    session.sequence = in.readLong();
+    SaveGame.read(in, engine);
+    return session;
+  }
+
+  /**
+   * Performs the given action with its argument, e.g. ("go", "north")
+   *
+   * @param action
+   * @param argument
+   * @return
+   */
+  public synchronized Result perform(String action, String argument) {
+    return perform(action + " " + argument);
+  }
+
+  /**
+   * Performs the given commands in order, e.g. ["go north", "take lamp"], without letting other
+   * requests for this session in between, and returns the Result of each command performed
+   *
+   * @param commands
+   * @param stopOnFailure whether to stop after the first command that fails
+   * @param stopOnVictory whether to stop after the command that wins the game
+   * @return
+   */
+  public synchronized List<Result> performAll(List<String> commands, boolean stopOnFailure,
+      boolean stopOnVictory) {
+    List<Result> results = new ArrayList<>(commands.size());
+    for (String command : commands) {
+      Result result = perform(command);
+      results.add(result);
+      if (stopOnFailure && result.getState() == State.FAILURE
+          || stopOnVictory && result.getState() == State.VICTORY) {
+        break;
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Performs a command line as a player would type it, e.g. "go north"
+   *
+   * @param command
+   * @return
+   */
+  public synchronized Result perform(String command) {
+    Player player = engine.getPlayer();
+    long changes = engine.getChanges();
+    Result result = parser.perform(engine, command);
+
+    // Only commands that changed the game are worth replaying, so looking around and saving are
+    // not recorded. A command that loaded a saved game is recorded as the state it loaded, since
+    // the save may change later.
+    if (journal != null && engine.getChanges() != changes) {
+      if (engine.getPlayer() != player) {
+        journal.state(number, ++sequence, SaveGame.save(engine));
+      } else {
+        journal.command(number, ++sequence, command, result.getState());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the saved state of the game
+   *
+   * @return
+   */
+  public synchronized byte[] save() {
+    return SaveGame.save(engine);
+  }
+
+  /**
+   * Replaces the game with a saved one and returns the details of its room
+   *
+   * @param save
+   * @return
+   */
+  public synchronized Result load(byte[] save) {
+    try {
+      SaveGame.read(new DataInputStream(new ByteArrayInputStream(save)), engine);
+    } catch (IOException e) {
+      return Result.of(Outcome.LOAD_FAILED, e.getMessage());
+    }
+    if (journal != null) {
+      journal.state(number, ++sequence, save);
+    }
+    return Result.of(Outcome.ROOM, Helper.describeRoom(engine));
+  }
+
+  /**
+   * Applies a command read back from the journal, unless the session already holds it
+   *
+   * @param command
+   * @param commandSequence
+   * @param expected the state the command originally ended in
+   * @throws IOException if the command no longer ends the same way, e.g. because the world
+   *     changed, after which the session cannot be trusted
+   */
+  synchronized void replay(String command, long commandSequence, State expected)
+      throws IOException {
+    if (commandSequence <= sequence) {
+      return;
+    }
+    State state = parser.perform(engine, command).getState();
+    if (state != expected) {
+      throw new IOException("\"" + command + "\" ended in " + state + ", not " + expected);
+    }
+    sequence = commandSequence;
+  }
+
+  /**
+   * Loads a saved game read back from the journal, unless the session already holds it
+   *
+   * @param save
+   * @param stateSequence
+   * @throws IOException
+   */
+  synchronized void replayState(byte[] save, long stateSequence) throws IOException {
+    if (stateSequence <= sequence) {
+      return;
+    }
+    SaveGame.read(new DataInputStream(new ByteArrayInputStream(save)), engine);
+    sequence = stateSequence;
+  }
+
+  /**
+   * Writes the session's number, id, last command and game state
+   *
+   * @param out
+   * @throws IOException
+   */
+  synchronized void writeSnapshot(DataOutput out) throws IOException {
+    out.writeInt(number);
+    out.writeUTF(id);
+    out.writeLong(sequence);
+    SaveGame.write(engine, out);
+  }
+
+  /**
+   * Returns the details of the current room
+   *
+   * @return
+   */
+  public synchronized Result examine() {
+    return perform("examine", "");
+  }
+
+  /**
+   * Returns the shortest way from the current room to the named room, or null if the room does
+   * not exist
+   *
+   * @param roomName
+   * @return
+   */
+  public synchronized Route route(String roomName) {
+    int roomId = engine.getWorld().getRoutes().findRoom(roomName);
+    if (roomId == World.NO_ROOM) {
+      return null;
+    }
+    return new Route(engine.getWorld().getRoomKey(roomId), engine.findRoute(roomId));
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns whether the player has won or quit
+   *
+   * @return
+   */
+  public synchronized boolean isFinished() {
+    return engine.isFinished();
+  }
+
+  int getNumber() {
+    return number;
+  }
+
+  GameEngine getEngine() {
+    return engine;
+  }
+
+  /**
+   * The way to a room: the directions to take in order, or none if it cannot be reached
+   */
+  public static final class Route {
+
+    private final String room;
+    private final boolean reachable;
+    private final List<String> directions;
+
+    private Route(String room, Direction[] route) {
+      this.room = room;
+      this.reachable = route != null;
+      this.directions = new ArrayList<>();
+      if (route != null) {
+        for (Direction direction : route) {
+          directions.add(direction.getKey());
+        }
+      }
+    }
+
+    public String getRoom() {
+      return room;
+    }
+
+    public boolean isReachable() {
+      return reachable;
+    }
+
+    /**
+     * @return the number of moves, or -1 if the room cannot be reached
+     */
+    public int getDistance() {
+      return reachable ? directions.size() : -1;
+    }
+
+    public List<String> getDirections() {
+      return directions;
+    }
+  }
+}
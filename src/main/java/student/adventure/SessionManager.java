@@ -0,0 +1,309 @@
+package student.adventure;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates, tracks and ends game sessions. Safe to use from many request threads at once.
+ *
+ * Given a journal directory, sessions are recorded as they are played and rebuilt from the
+ * directory when the manager starts again; a snapshot is taken periodically to keep the journal
+ * short. A session whose journal no longer replays the way it was played is left out of recovery
+ * and ended, without holding up the others.
+ *
+ * In a shared world every session plays in the same live world and sees the others' changes to
+ * it. Shared worlds are not journaled, since each session's commands replayed on their own would
+ * not reproduce how players took items from under each other.
+ */
+public class SessionManager implements Closeable {
+
+  public static final long DEFAULT_SNAPSHOT_INTERVAL = 60;
+
+  private final IO world;
+  private final WorldState shared;
+  private final Map<String, Session> sessions;
+  private final AtomicInteger nextNumber = new AtomicInteger();
+  private final Journal journal;
+  private final ScheduledExecutorService snapshots;
+
+  /**
+   * Constructor to host games of the world at the given path
+   *
+   * @param worldPath
+   * @throws IOException
+   */
+  public SessionManager(Path worldPath) throws IOException {
+    this(worldPath, false);
+  }
+
+  /**
+   * Constructor to host games of the world at the given path, either each in its own copy of the
+   * world or all in one shared world
+   *
+   * @param worldPath
+   * @param sharedWorld
+   * @throws IOException
+   */
+  public SessionManager(Path worldPath, boolean sharedWorld) throws IOException {
+    this.world = new IO(worldPath);
+    this.shared = sharedWorld ? new SharedWorldState(world.getWorld()) : null;
+    this.sessions = new ConcurrentHashMap<>();
+    this.journal = null;
+    this.snapshots = null;
+  }
+
+  /**
+   * Constructor to host games of the world at the given path, recovering the sessions recorded
+   * in the given journal directory and recording sessions there from now on
+   *
+   * @param worldPath
+   * @param journalDirectory
+   * @throws IOException if the world or the journal cannot be read
+   */
+  public SessionManager(Path worldPath, Path journalDirectory) throws IOException {
+    this(worldPath, journalDirectory, Journal.DEFAULT_COMMIT_INTERVAL, DEFAULT_SNAPSHOT_INTERVAL);
+  }
+
+  /**
+   * Constructor to journal sessions with the given group commit interval in milliseconds and
+   * snapshot interval in seconds
+   *
+   * @param worldPath
+   * @param journalDirectory
+   * @param commitInterval
+   * @param snapshotInterval
+   * @throws IOException
+   */
+  SessionManager(Path worldPath, Path journalDirectory, long commitInterval,
+      long snapshotInterval) throws IOException {
+    this.world = new IO(worldPath);
+    this.shared = null;
+    this.sessions = new ConcurrentHashMap<>();
+    this.journal = new Journal(journalDirectory, commitInterval);
+    recover();
+
+    this.snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "session-snapshots");
+      thread.setDaemon(true);
+      return thread;
+    });
+    snapshots.scheduleWithFixedDelay(() -> {
+      // A task that throws is never run again, so report a failed snapshot and try next time
+      try {
+        if (journal.sinceSnapshot() > 0) {
+          snapshot();
+        }
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Could not snapshot the sessions: " + e.getMessage());
+      }
+    }, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Starts a new game in the configured starting room
+   *
+   * @return the new session
+   */
+  public Session create() {
+    // Every session shares the loaded world and keeps its own changes to it, unless the changes
+    // are shared too
+    GameEngine engine = shared == null ? world.createEngine()
+        : new GameEngine(world.getWorld(), shared);
+    String id = UUID.randomUUID().toString();
+    if (journal == null) {
+      Session session = new Session(id, engine);
+      sessions.put(id, session);
+      return session;
+    }
+
+    // Track the session before journaling it, so a snapshot taken in between either holds the
+    // session or is followed by its creation in the journal
+    Session session = new Session(id, engine, journal, nextNumber.getAndIncrement());
+    sessions.put(id, session);
+    journal.create(session.getNumber(), id);
+    return session;
+  }
+
+  /**
+   * Returns the session with the given id, or null if there is none
+   *
+   * @param id
+   * @return
+   */
+  public Session get(String id) {
+    return sessions.get(id);
+  }
+
+  /**
+   * Ends the session with the given id and deletes the games it saved, which no other session can
+   * load
+   *
+   * @param id
+   * @return the ended session, or null if there was none
+   */
+  public Session remove(String id) {
+    Session session = sessions.remove(id);
+    if (session == null) {
+      return null;
+    }
+    if (journal != null) {
+      journal.end(session.getNumber());
+    }
+    try {
+      SaveGame.delete(session.getEngine().getSaveDirectory());
+    } catch (IOException e) {
+      // Leftover saves take some disk space but cannot be loaded by anyone
+    }
+    return session;
+  }
+
+  public World getWorld() {
+    return world.getWorld();
+  }
+
+  /**
+   * Returns whether every session plays in one shared world
+   *
+   * @return
+   */
+  public boolean isShared() {
+    return shared != null;
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * Writes a snapshot of every session so the journal before it can be dropped
+   *
+   * @throws IOException
+   */
+  public void snapshot() throws IOException {
+    if (journal == null) {
+      throw new IllegalStateException("Sessions are not journaled");
+    }
+    journal.snapshot(out -> {
+      for (Session session : sessions.values()) {
+        out.writeBoolean(true);
+        session.writeSnapshot(out);
+      }
+    });
+  }
+
+  /**
+   * Waits until every command performed so far is durable
+   *
+   * @throws IOException
+   */
+  public void sync() throws IOException {
+    if (journal != null) {
+      journal.sync();
+    }
+  }
+
+  /**
+   * Stops taking snapshots, closes the journal once everything in it is on disk and releases the
+   * world, e.g. its prefetch thread if it is paged in
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    if (journal != null) {
+      snapshots.shutdownNow();
+      journal.close();
+    }
+    if (world.getWorld() instanceof Closeable) {
+      ((Closeable) world.getWorld()).close();
+    }
+  }
+
+  /**
+   * Rebuilds the sessions from the latest snapshot and replays the journal after it
+   */
+  private void recover() throws IOException {
+    final Map<Integer, Session> byNumber = new HashMap<>();
+    final Map<Integer, String> skipped = new HashMap<>();
+    journal.recover(new Journal.Handler() {
+      @Override
+      public void restore(DataInputStream in) throws IOException {
+        add(Session.readSnapshot(in, world.createEngine(), journal));
+      }
+
+      @Override
+      public void create(int number, String id) {
+        if (!byNumber.containsKey(number)) {
+          add(new Session(id, world.createEngine(), journal, number));
+        }
+      }
+
+      @Override
+      public void command(int number, long sequence, String command, State state) {
+        Session session = byNumber.get(number);
+        if (session == null) {
+          return;
+        }
+        try {
+          session.replay(command, sequence, state);
+        } catch (IOException e) {
+          skip(session, e);
+        }
+      }
+
+      @Override
+      public void state(int number, long sequence, byte[] save) {
+        Session session = byNumber.get(number);
+        if (session == null) {
+          return;
+        }
+        try {
+          session.replayState(save, sequence);
+        } catch (IOException e) {
+          skip(session, e);
+        }
+      }
+
+      @Override
+      public void end(int number) {
+        byNumber.remove(number);
+        skipped.remove(number);
+      }
+
+      /**
+       * Leaves a session that no longer replays as recorded out of recovery
+       */
+      private void skip(Session session, IOException reason) {
+        byNumber.remove(session.getNumber());
+        skipped.put(session.getNumber(), session.getId());
+        System.err.println("Could not recover session " + session.getId() + ": "
+            + reason.getMessage());
+      }
+
+      private void add(Session session) {
+        byNumber.put(session.getNumber(), session);
+        if (session.getNumber() >= nextNumber.get()) {
+          nextNumber.set(session.getNumber() + 1);
+        }
+      }
+    });
+    for (Session session : byNumber.values()) {
+      sessions.put(session.getId(), session);
+    }
+
+    // End skipped sessions, so they are not tried again on the next start
+    for (int number : skipped.keySet()) {
+      journal.end(number);
+    }
+  }
+}
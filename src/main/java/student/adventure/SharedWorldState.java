@@ -0,0 +1,98 @@
+package student.adventure;
+
+import java.util.Collection;
+import student.adventure.Objects.Item;
+
+/**
+ * The changes every player makes to one live World, for games where players see each other's
+ * takes, drops and trades. Each room is guarded by one of a fixed set of locks picked by its id,
+ * so checking and changing a room's items is atomic: an item taken by one player is gone for all
+ * others. Neighbouring room ids get different locks, so players spread over the world rarely wait
+ * for each other.
+ */
+final class SharedWorldState extends WorldState {
+
+  static final int MAX_STRIPES = 4096;
+
+  private final Object[] locks;
+
+  /**
+   * Constructor to instantiate an unchanged live state of the given world
+   *
+   * @param world
+   */
+  SharedWorldState(World world) {
+    super(world, true);
+    int stripes = Integer.highestOneBit(Math.max(1, Math.min(world.getRoomCount(), MAX_STRIPES)
+        - 1)) << 1;
+    locks = new Object[stripes];
+    for (int i = 0; i < stripes; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  /**
+   * Returns the lock guarding the given room
+   *
+   * @param roomId
+   * @return
+   */
+  @Override
+  Object lock(int roomId) {
+    return locks[roomId & (locks.length - 1)];
+  }
+
+  @Override
+  public Collection<Item> getItems(int roomId) {
+    synchronized (lock(roomId)) {
+      return super.getItems(roomId);
+    }
+  }
+
+  @Override
+  public String describe(int roomId) {
+    synchronized (lock(roomId)) {
+      return super.describe(roomId);
+    }
+  }
+
+  @Override
+  public boolean hasItem(int roomId, int itemId) {
+    synchronized (lock(roomId)) {
+      return super.hasItem(roomId, itemId);
+    }
+  }
+
+  @Override
+  public boolean removeItem(int roomId, int itemId) {
+    synchronized (lock(roomId)) {
+      return super.removeItem(roomId, itemId);
+    }
+  }
+
+  @Override
+  public boolean addItem(int roomId, int itemId) {
+    synchronized (lock(roomId)) {
+      return super.addItem(roomId, itemId);
+    }
+  }
+
+  @Override
+  public boolean isShared() {
+    return true;
+  }
+
+  @Override
+  int[] getAdded(int roomId) {
+    synchronized (lock(roomId)) {
+      return super.getAdded(roomId);
+    }
+  }
+
+  @Override
+  int[] getRemoved(int roomId) {
+    synchronized (lock(roomId)) {
+      return super.getRemoved(roomId);
+    }
+  }
+}
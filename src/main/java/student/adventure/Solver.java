@@ -0,0 +1,366 @@
+package student.adventure;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import student.adventure.Objects.Direction;
+import student.adventure.Objects.Item;
+import student.adventure.Objects.RoomType;
+
+/**
+ * Finds the shortest sequence of commands that wins a world, or proves that none does, by a
+ * breadth-first search over game states using the Game Engine's rules for moving, requirements
+ * and stores. Each level of the search is expanded on a parallel stream, so the frontier is split
+ * across the fork/join pool's work-stealing threads.
+ *
+ * A state is the current room and where each relevant item is: where it started, in the
+ * inventory, or sold to a store. Money follows from those. Only items that can matter for winning
+ * are relevant: items some room requires, and, if any of those must be bought, items that can be
+ * sold for money. Dropping items and buying anything else never shortens a win, so the search
+ * leaves them out.
+ */
+public class Solver {
+
+  /**
+   * Rough heap cost of one visited state, without its item words
+   */
+  private static final int STATE_BYTES = 120;
+
+  private static final byte START = 0;
+  private static final byte MOVE = 1;
+  private static final byte TAKE = 2;
+  private static final byte SELL = 3;
+  private static final byte BUY = 4;
+
+  // Where a relevant item is; required items sold to a store remember which one
+  private static final int ORIGINAL = 0;
+  private static final int HELD = 1;
+  private static final int SOLD = 2;
+
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private static final int[] NONE = new int[0];
+
+  private final World world;
+  private final int[] relevant;
+  private final int[] relevantIndex;
+  private final boolean[] required;
+  private final long[] value;
+  private final boolean[] fromStore;
+  private final int[][] requirements;
+  private final int[] storeIndex;
+  private final boolean needsMoney;
+  private final int bits;
+  private final int words;
+
+  /**
+   * Constructor to prepare a search of the given world
+   *
+   * @param world
+   */
+  public Solver(World world) {
+    this.world = world;
+    int rooms = world.getRoomCount();
+    int items = world.getItemCount();
+
+    // Find where each item starts, which rooms are stores and what each room requires
+    int[] itemRoom = new int[items];
+    Arrays.fill(itemRoom, World.NO_ROOM);
+    storeIndex = new int[rooms];
+    requirements = new int[rooms][];
+    boolean[] isRequired = new boolean[items];
+    int stores = 0;
+    for (int room = 0; room < rooms; room++) {
+      storeIndex[room] = world.getType(room) == RoomType.STORE ? stores++ : -1;
+      for (int itemId : world.getRoomItems(room)) {
+        itemRoom[itemId] = room;
+      }
+      String[] names = world.getRoom(room).getRequirements();
+      requirements[room] = names.length == 0 ? NONE : new int[names.length];
+      for (int r = 0; r < names.length; r++) {
+        requirements[room][r] = world.getItemId(names[r]);
+        isRequired[requirements[room][r]] = true;
+      }
+    }
+
+    // Money only matters if some required item has to be bought
+    boolean buying = false;
+    for (int itemId = 0; itemId < items; itemId++) {
+      buying |= isRequired[itemId] && itemRoom[itemId] != World.NO_ROOM
+          && storeIndex[itemRoom[itemId]] >= 0;
+    }
+    needsMoney = buying;
+
+    relevantIndex = new int[items];
+    List<Integer> chosen = new ArrayList<>();
+    for (int itemId = 0; itemId < items; itemId++) {
+      relevantIndex[itemId] = -1;
+      if (itemRoom[itemId] == World.NO_ROOM) {
+        continue;
+      }
+      boolean inStore = storeIndex[itemRoom[itemId]] >= 0;
+      boolean sellable = needsMoney && !inStore && world.getItem(itemId).getValue() > 0;
+      if (isRequired[itemId] || sellable) {
+        relevantIndex[itemId] = chosen.size();
+        chosen.add(itemId);
+      }
+    }
+
+    int count = chosen.size();
+    relevant = new int[count];
+    required = new boolean[count];
+    value = new long[count];
+    fromStore = new boolean[count];
+    for (int i = 0; i < count; i++) {
+      int itemId = chosen.get(i);
+      Item item = world.getItem(itemId);
+      relevant[i] = itemId;
+      required[i] = isRequired[itemId];
+      value[i] = item.getValue();
+      fromStore[i] = storeIndex[itemRoom[itemId]] >= 0;
+    }
+    bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(SOLD + stores));
+    words = (count * bits + 63) / 64;
+  }
+
+  /**
+   * Searches for the shortest win from the starting room without using more than about the given
+   * number of bytes for visited states
+   *
+   * @param memoryBudget
+   * @return
+   */
+  public Solution solve(long memoryBudget) {
+    long maxStates = memoryBudget / (STATE_BYTES + 8L * words);
+    Set<State> visited = ConcurrentHashMap.newKeySet();
+    AtomicInteger explored = new AtomicInteger(1);
+
+    State start = new State(world.getStartingRoom(), new long[words], 0, null, START, 0);
+    visited.add(start);
+    List<State> frontier = Collections.singletonList(start);
+    while (!frontier.isEmpty()) {
+      if (explored.get() > maxStates) {
+        return new Solution(Solution.Status.BUDGET_EXCEEDED, null, explored.get());
+      }
+      frontier = frontier.parallelStream()
+          .flatMap(state -> expand(state, visited, explored, maxStates).stream())
+          .collect(Collectors.toList());
+      for (State state : frontier) {
+        if (state.action == MOVE && world.getType(state.room) == RoomType.WIN) {
+          return new Solution(Solution.Status.WON, commands(state), explored.get());
+        }
+      }
+    }
+    return new Solution(Solution.Status.UNWINNABLE, null, explored.get());
+  }
+
+  /**
+   * Returns the unvisited states one command away from the given state
+   */
+  private List<State> expand(State state, Set<State> visited, AtomicInteger explored,
+      long maxStates) {
+    List<State> next = new ArrayList<>();
+    if (explored.get() > maxStates) {
+      return next;
+    }
+
+    // Move through any exit whose requirements are met
+    for (Direction direction : DIRECTIONS) {
+      int target = world.getExit(state.room, direction);
+      if (target != World.NO_ROOM && meetsRequirements(state, target)) {
+        add(new State(target, state.items, state.money, state, MOVE, direction.ordinal()), next,
+            visited, explored);
+      }
+    }
+
+    int store = storeIndex[state.room];
+    if (store >= 0 && !needsMoney) {
+      return next;
+    }
+    if (store < 0) {
+      // Take relevant items still where they started
+      for (int itemId : world.getRoomItems(state.room)) {
+        int i = relevantIndex[itemId];
+        if (i >= 0 && state.status(i, bits) == ORIGINAL) {
+          add(state.with(i, HELD, 0, TAKE, itemId, bits), next, visited, explored);
+        }
+      }
+      return next;
+    }
+
+    for (int i = 0; i < relevant.length; i++) {
+      int status = state.status(i, bits);
+      if (status == HELD) {
+        // Only required items are ever bought back, so only they remember the store
+        int sold = required[i] ? SOLD + store : SOLD;
+        add(state.with(i, sold, value[i], SELL, relevant[i], bits), next, visited, explored);
+      } else if (required[i] && value[i] <= state.money
+          && (status == SOLD + store || status == ORIGINAL && fromStore[i]
+          && world.hasItem(state.room, relevant[i]))) {
+        add(state.with(i, HELD, -value[i], BUY, relevant[i], bits), next, visited, explored);
+      }
+    }
+    return next;
+  }
+
+  private void add(State state, List<State> next, Set<State> visited, AtomicInteger explored) {
+    if (visited.add(state)) {
+      explored.incrementAndGet();
+      next.add(state);
+    }
+  }
+
+  private boolean meetsRequirements(State state, int room) {
+    for (int itemId : requirements[room]) {
+      int i = relevantIndex[itemId];
+      if (i < 0 || state.status(i, bits) != HELD) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Follows parents back to the start and returns the commands on the way
+   */
+  private List<String> commands(State state) {
+    List<String> commands = new ArrayList<>();
+    for (State step = state; step.action != START; step = step.parent) {
+      if (step.action == MOVE) {
+        commands.add("go " + DIRECTIONS[step.argument].getKey());
+      } else {
+        String verb = step.action == TAKE ? "take " : step.action == SELL ? "sell " : "buy ";
+        commands.add(verb + world.getItem(step.argument).getName());
+      }
+    }
+    Collections.reverse(commands);
+    return commands;
+  }
+
+  /**
+   * A room and the packed status of every relevant item. Money is carried along but follows from
+   * the statuses, so it takes no part in equality.
+   */
+  private static final class State {
+
+    private final int room;
+    private final long[] items;
+    private final long money;
+    private final State parent;
+    private final byte action;
+    private final int argument;
+    private final int hash;
+
+    private State(int room, long[] items, long money, State parent, byte action, int argument) {
+      this.room = room;
+      this.items = items;
+      this.money = money;
+      this.parent = parent;
+      this.action = action;
+      this.argument = argument;
+      this.hash = 31 * room + Arrays.hashCode(items);
+    }
+
+    private int status(int item, int bits) {
+      long position = (long) item * bits;
+      int word = (int) (position >>> 6);
+      int shift = (int) (position & 63);
+      long mask = (1L << bits) - 1;
+      long status = items[word] >>> shift;
+      if (shift + bits > 64) {
+        status |= items[word + 1] << (64 - shift);
+      }
+      return (int) (status & mask);
+    }
+
+    private State with(int item, int status, long moneyChange, byte action, int argument,
+        int bits) {
+      long[] changed = items.clone();
+      long position = (long) item * bits;
+      int word = (int) (position >>> 6);
+      int shift = (int) (position & 63);
+      long mask = (1L << bits) - 1;
+      changed[word] = changed[word] & ~(mask << shift) | (long) status << shift;
+      if (shift + bits > 64) {
+        int spill = 64 - shift;
+        changed[word + 1] = changed[word + 1] & ~(mask >>> spill) | (long) status >>> spill;
+      }
+      return new State(room, changed, money + moneyChange, this, action, argument);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof State)) {
+        return false;
+      }
+      State other = (State) o;
+      return room == other.room && Arrays.equals(items, other.items);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Outcome of a search
+   */
+  public static final class Solution {
+
+    public enum Status {
+      WON,
+      UNWINNABLE,
+      BUDGET_EXCEEDED
+    }
+
+    private final Status status;
+    private final List<String> commands;
+    private final int statesExplored;
+
+    private Solution(Status status, List<String> commands, int statesExplored) {
+      this.status = status;
+      this.commands = commands;
+      this.statesExplored = statesExplored;
+    }
+
+    public Status getStatus() {
+      return status;
+    }
+
+    /**
+     * @return the shortest winning commands, or null if no win was found
+     */
+    public List<String> getCommands() {
+      return commands;
+    }
+
+    public int getStatesExplored() {
+      return statesExplored;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: Solver <world> [memory budget in MB]");
+      System.exit(2);
+    }
+    long budget = (args.length > 1 ? Long.parseLong(args[1]) : 512) << 20;
+    long start = System.nanoTime();
+    Solution solution = new Solver(WorldLoader.load(Paths.get(args[0]))).solve(budget);
+    System.out.println(solution.getStatus() + " after exploring " + solution.getStatesExplored()
+        + " states in " + (System.nanoTime() - start) / 1000000 + " ms");
+    if (solution.getCommands() != null) {
+      System.out.println(solution.getCommands().size() + " commands:");
+      for (String command : solution.getCommands()) {
+        System.out.println(command);
+      }
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package student.adventure;
+
+/**
+ * Picks which of a fixed set of stripes the calling thread records metrics into. A thread always
+ * gets the same stripe and threads created one after another get different ones, so counters
+ * kept per stripe are rarely written by two cores at once.
+ */
+final class Stripes {
+
+  static final int MAX_STRIPES = 64;
+
+  /**
+   * The number of stripes: the number of processors rounded up to a power of two, at most
+   * MAX_STRIPES
+   */
+  static final int COUNT = Integer.highestOneBit(Math.max(1, Math.min(
+      Runtime.getRuntime().availableProcessors(), MAX_STRIPES) - 1)) << 1;
+
+  private Stripes() {
+  }
+
+  /**
+   * Returns the stripe of the calling thread, from 0 to COUNT - 1
+   *
+   * @return
+   */
+  static int current() {
+    return (int) Thread.currentThread().getId() & (COUNT - 1);
+  }
+}
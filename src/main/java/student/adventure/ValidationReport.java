@@ -0,0 +1,74 @@
+package student.adventure;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every problem found while validating game data, each with the JSON path it was found at, in the
+ * order the rooms were read
+ */
+public final class ValidationReport {
+
+  private final List<Problem> problems;
+
+  ValidationReport(List<Problem> problems) {
+    this.problems = Collections.unmodifiableList(problems);
+  }
+
+  /**
+   * @return true if no problems were found
+   */
+  public boolean isValid() {
+    return problems.isEmpty();
+  }
+
+  /**
+   * @return
+   */
+  public List<Problem> getProblems() {
+    return problems;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder();
+    report.append(problems.size()).append(problems.size() == 1 ? " problem" : " problems");
+    for (Problem problem : problems) {
+      report.append('\n').append(problem);
+    }
+    return report.toString();
+  }
+
+  /**
+   * A single problem and where it is
+   */
+  public static final class Problem {
+
+    private final String path;
+    private final String message;
+
+    Problem(String path, String message) {
+      this.path = path;
+      this.message = message;
+    }
+
+    /**
+     * @return the JSON path of the offending value, e.g. "Rooms.The Ike.directions.East"
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * @return
+     */
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      return path + ": " + message;
+    }
+  }
+}
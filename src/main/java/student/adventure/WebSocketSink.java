@@ -0,0 +1,34 @@
+package student.adventure;
+
+import org.glassfish.grizzly.websockets.WebSocket;
+
+/**
+ * Buffered output to a WebSocket. Each flush sends what was buffered as one text message, so a
+ * client gets exactly one message per command, even when the command printed nothing.
+ */
+public class WebSocketSink implements OutputSink {
+
+  private final WebSocket socket;
+  private final StringBuilder pending = new StringBuilder();
+
+  /**
+   * Constructor to send to the given socket
+   *
+   * @param socket
+   */
+  public WebSocketSink(WebSocket socket) {
+    this.socket = socket;
+  }
+
+  @Override
+  public OutputSink print(CharSequence text) {
+    pending.append(text);
+    return this;
+  }
+
+  @Override
+  public void flush() {
+    socket.send(pending.toString());
+    pending.setLength(0);
+  }
+}
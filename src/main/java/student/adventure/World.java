@@ -0,0 +1,183 @@
+package student.adventure;
+
+import student.adventure.Objects.Configuration;
+import student.adventure.Objects.Direction;
+import student.adventure.Objects.Item;
+import student.adventure.Objects.Room;
+import student.adventure.Objects.RoomType;
+
+/**
+ * Immutable template of a loaded world. One World is shared by every game played on it; changes a
+ * player makes to the rooms are kept in that player's own WorldState.
+ *
+ * Rooms and item names are compiled into dense int ids at load time. Exits are looked up by room
+ * id and Direction, and each room's requirements are a sparse bitmask over item ids, stored as
+ * pairs of (word index, bits) words.
+ */
+public abstract class World {
+
+  public static final int NO_ROOM = -1;
+  public static final int NO_ITEM = -1;
+
+  private final Configuration configuration;
+  private final RoomViews views = new RoomViews(RoomViews.DEFAULT_CAPACITY);
+  private volatile RouteIndex routes;
+  private final RoomVisits roomVisits = new RoomVisits();
+
+  /**
+   * Constructor to instantiate a world with the given configuration
+   *
+   * @param configuration
+   */
+  protected World(Configuration configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * Returns the id of the room with the given key, or NO_ROOM if there is none
+   *
+   * @param roomKey
+   * @return
+   */
+  public abstract int getRoomId(String roomKey);
+
+  public abstract String getRoomKey(int roomId);
+
+  public abstract int getRoomCount();
+
+  /**
+   * Returns the room reached by leaving the given room in the given direction, or NO_ROOM
+   *
+   * @param roomId
+   * @param direction
+   * @return
+   */
+  public abstract int getExit(int roomId, Direction direction);
+
+  public abstract RoomType getType(int roomId);
+
+  /**
+   * Returns the given room with its description, directions, items and requirements
+   *
+   * @param roomId
+   * @return
+   */
+  public abstract Room getRoom(int roomId);
+
+  /**
+   * Returns the description of the given room
+   *
+   * @param roomId
+   * @return
+   */
+  public String getDescription(int roomId) {
+    return getRoom(roomId).getDescription();
+  }
+
+  /**
+   * Returns the id of the item with the given name ignoring case, or NO_ITEM if there is none
+   *
+   * @param name
+   * @return
+   */
+  public abstract int getItemId(CharSequence name);
+
+  /**
+   * Returns the item with the given id, or null if the id only names a requirement
+   *
+   * @param itemId
+   * @return
+   */
+  public abstract Item getItem(int itemId);
+
+  /**
+   * Returns the lowercase name of the item with the given id
+   *
+   * @param itemId
+   * @return
+   */
+  public abstract String getItemName(int itemId);
+
+  public abstract int getItemCount();
+
+  /**
+   * Returns the sorted ids of the items the given room starts with. Callers must not modify it.
+   *
+   * @param roomId
+   * @return
+   */
+  public abstract int[] getRoomItems(int roomId);
+
+  /**
+   * Checks if the given room starts with the given item
+   *
+   * @param roomId
+   * @param itemId
+   * @return
+   */
+  public abstract boolean hasItem(int roomId, int itemId);
+
+  /**
+   * Checks if the given inventory holds every item needed to enter the given room
+   *
+   * @param roomId
+   * @param inventory
+   * @return
+   */
+  public abstract boolean meetsRequirements(int roomId, Inventory inventory);
+
+  public int getStartingRoom() {
+    return getRoomId(configuration.getStartingRoom());
+  }
+
+  public Configuration getConfiguration() {
+    return configuration;
+  }
+
+  /**
+   * Returns the cache of rooms rendered in their starting state
+   *
+   * @return
+   */
+  RoomViews getViews() {
+    return views;
+  }
+
+  /**
+   * Returns the index of routes between rooms, building it the first time it is needed
+   *
+   * @return
+   */
+  RouteIndex getRoutes() {
+    RouteIndex index = routes;
+    if (index == null) {
+      synchronized (this) {
+        index = routes;
+        if (index == null) {
+          index = new RouteIndex(this, keepsIndexesOffHeap());
+          routes = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns whether indexes built over every room, such as the route index, should be kept off
+   * the heap, e.g. because the world itself is only paged into it
+   *
+   * @return
+   */
+  protected boolean keepsIndexesOffHeap() {
+    return false;
+  }
+
+  /**
+   * Returns how many times each room has been entered, across every game of this world
+   *
+   * @return
+   */
+  RoomVisits getRoomVisits() {
+    return roomVisits;
+  }
+}
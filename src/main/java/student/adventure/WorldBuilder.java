@@ -0,0 +1,389 @@
+package student.adventure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import student.adventure.Objects.Configuration;
+import student.adventure.Objects.Direction;
+import student.adventure.Objects.Item;
+import student.adventure.Objects.Room;
+import student.adventure.Objects.RoomType;
+import student.adventure.ValidationReport.Problem;
+
+/**
+ * Compiles rooms into a World. Loaders hand rooms over one at a time as they read them, and each
+ * room is checked and compiled into flat tables straight away, so no Room read is kept. Only what
+ * can only be checked once every room is known, the rooms directions lead to and the items rooms
+ * require, waits until the world is built; every problem is then reported together.
+ */
+class WorldBuilder {
+
+  // Order of the checks within a room, so problems found early and late are reported together
+  private static final int FIELDS = 0;
+  private static final int DIRECTIONS = 1;
+  private static final int ITEMS = 2;
+  private static final int REQUIREMENTS = 3;
+  private static final int AFTER_ROOMS = Integer.MAX_VALUE;
+
+  private static final String[] NO_STRINGS = new String[0];
+  private static final int[] NO_IDS = new int[0];
+
+  private Configuration configuration;
+  private final Map<String, Integer> roomIds = new HashMap<>();
+  private final List<String> roomKeys = new ArrayList<>();
+  private final List<String> names = new ArrayList<>();
+  private final List<String> descriptions = new ArrayList<>();
+  private final List<String> typeNames = new ArrayList<>();
+  private final List<RoomType> types = new ArrayList<>();
+  private final List<String[]> directionKeys = new ArrayList<>();
+  private final List<String[]> directionTargets = new ArrayList<>();
+  private final List<int[]> roomItems = new ArrayList<>();
+  private final List<String[]> requirementNames = new ArrayList<>();
+  private final List<int[]> requirements = new ArrayList<>();
+  private final Map<String, Integer> itemIds = new HashMap<>();
+  private final List<String> itemNames = new ArrayList<>();
+  private final List<Item> items = new ArrayList<>();
+  private final List<Integer> itemRooms = new ArrayList<>();
+  private final List<String> itemKeys = new ArrayList<>();
+  private final Map<String, String> shared = new HashMap<>();
+  private final List<Found> problems = new ArrayList<>();
+
+  /**
+   * Sets the game configuration
+   *
+   * @param configuration
+   * @return this builder
+   */
+  WorldBuilder configuration(Configuration configuration) {
+    this.configuration = configuration;
+    return this;
+  }
+
+  /**
+   * Checks and compiles a room. Its directions and requirements are only checked when the world is
+   * built, once every room and item is known, so that every problem can be reported together.
+   *
+   * @param key
+   * @param room
+   * @return this builder
+   */
+  WorldBuilder room(String key, Room room) {
+    if (roomIds.containsKey(key)) {
+      problem(AFTER_ROOMS, FIELDS, new Problem("Rooms." + key, "room is defined more than once"));
+      return this;
+    }
+    int roomId = roomKeys.size();
+    roomIds.put(key, roomId);
+    roomKeys.add(key);
+    if (room == null) {
+      problem(roomId, FIELDS, missing(path(roomId, "")));
+      add(null, null, null, NO_STRINGS, NO_STRINGS, NO_IDS, NO_STRINGS, NO_IDS);
+      return this;
+    }
+
+    // Check if room has necessary fields
+    require(room.getName(), roomId, ".name");
+    require(room.getDescription(), roomId, ".description");
+    require(room.getType(), roomId, ".type");
+    require(room.getDirections(), roomId, ".directions");
+    require(room.getItems(), roomId, ".items");
+    require(room.getRequirements(), roomId, ".requirements");
+
+    // Keep the directions by key; where they lead is checked once every room is known
+    String[] keys = NO_STRINGS;
+    String[] targets = NO_STRINGS;
+    if (room.getDirections() != null) {
+      keys = new String[room.getDirections().size()];
+      targets = new String[keys.length];
+      int d = 0;
+      for (Map.Entry<String, String> exit : room.getDirections().entrySet()) {
+        if (exit.getValue() == null) {
+          problem(roomId, DIRECTIONS, missing(path(roomId, ".directions." + exit.getKey())));
+        }
+        keys[d] = shared(exit.getKey());
+        targets[d++] = exit.getValue();
+      }
+    }
+
+    // Give each new item name an id in the order they appear, and check each item is complete and
+    // defined only once
+    int[] ids = NO_IDS;
+    if (room.getItems() != null) {
+      ids = new int[room.getItems().size()];
+      int i = 0;
+      for (Map.Entry<String, Item> entry : room.getItems().entrySet()) {
+        Item item = entry.getValue();
+        String itemKey = entry.getKey();
+        if (item == null) {
+          problem(roomId, ITEMS, missing(path(roomId, ".items." + itemKey)));
+          continue;
+        }
+        require(item.getName(), roomId, itemKey, ".name");
+        require(item.getDescription(), roomId, itemKey, ".description");
+        require(item.hasValue() ? item : null, roomId, itemKey, ".value");
+        if (item.getName() != null) {
+          int id = itemId(item.getName(), item, roomId, itemKey);
+          if (itemRooms.get(id) != roomId || !itemKeys.get(id).equals(itemKey)) {
+            problem(roomId, ITEMS, new Problem(path(roomId, ".items." + itemKey), "item "
+                + item.getName() + " is already defined at "
+                + path(itemRooms.get(id), ".items." + itemKeys.get(id))));
+          } else {
+            ids[i++] = id;
+          }
+        }
+      }
+      ids = Arrays.copyOf(ids, i);
+      Arrays.sort(ids);
+    }
+
+    // Keep the names of required items; whether they exist is checked once every item is known
+    String[] required = NO_STRINGS;
+    int[] requiredIds = NO_IDS;
+    if (room.getRequirements() != null) {
+      required = room.getRequirements();
+      requiredIds = new int[required.length];
+      int r = 0;
+      for (int n = 0; n < required.length; n++) {
+        if (required[n] == null) {
+          problem(roomId, REQUIREMENTS, missing(path(roomId, ".requirements[" + n + "]")));
+        } else {
+          requiredIds[r++] = itemId(required[n], null, World.NO_ROOM, null);
+        }
+      }
+      requiredIds = Arrays.copyOf(requiredIds, r);
+    }
+
+    add(room.getName(), room.getDescription(), room.getType(), keys, targets, ids, required,
+        requiredIds);
+    return this;
+  }
+
+  /**
+   * Finishes checking the world and reports every problem found, in the order of the rooms:
+   * missing fields, directions to rooms that do not exist, items defined more than once and
+   * requirements naming no item
+   *
+   * @return
+   */
+  ValidationReport validate() {
+    List<Problem> report = new ArrayList<>();
+
+    // Sanitize game configuration
+    if (configuration == null) {
+      report.add(missing("Configuration"));
+    } else {
+      require(configuration.getInitializationText(), "Configuration.initializationText", report);
+      require(configuration.getVictoryText(), "Configuration.victoryText", report);
+      require(configuration.getStartingRoom(), "Configuration.startingRoom", report);
+      if (configuration.getStartingRoom() != null
+          && !roomIds.containsKey(configuration.getStartingRoom())) {
+        report.add(new Problem("Configuration.startingRoom",
+            "room " + configuration.getStartingRoom() + " does not exist"));
+      }
+    }
+
+    // Rooms only read tables that are complete by now, so they can be checked independently
+    List<Found> found = new ArrayList<>(problems);
+    found.addAll(IntStream.range(0, roomKeys.size()).parallel()
+        .mapToObj(this::validateReferences)
+        .flatMap(List::stream)
+        .collect(Collectors.toList()));
+    found.sort(Comparator.comparingLong(problem -> problem.order));
+    for (Found problem : found) {
+      report.add(problem.problem);
+    }
+    return new ValidationReport(report);
+  }
+
+  /**
+   * Validates and compiles the world
+   *
+   * @return
+   * @throws InvalidWorldException listing every problem if the world is not valid
+   */
+  World build() {
+    ValidationReport report = validate();
+    if (!report.isValid()) {
+      throw new InvalidWorldException(report);
+    }
+
+    // Resolve directions into room ids and the adjacency array; each room writes only its own
+    // slots
+    int count = roomKeys.size();
+    int[] exits = new int[count * Direction.count()];
+    int[][] directionRooms = new int[count][];
+    Arrays.fill(exits, World.NO_ROOM);
+    IntStream.range(0, count).parallel().forEach(id -> {
+      String[] keys = directionKeys.get(id);
+      String[] targets = directionTargets.get(id);
+      directionRooms[id] = new int[keys.length];
+      for (int d = 0; d < keys.length; d++) {
+        directionRooms[id][d] = roomIds.get(targets[d]);
+        Direction direction = Direction.fromString(keys[d]);
+        if (direction != null) {
+          exits[id * Direction.count() + direction.ordinal()] = directionRooms[id][d];
+        }
+      }
+    });
+
+    // Compile each room's requirements into a mask over item ids
+    long[][] masks = new long[count][];
+    IntStream.range(0, count).parallel().forEach(id -> {
+      masks[id] = compileMask(requirements.get(id));
+    });
+
+    return new HeapWorld(configuration, new HashMap<>(roomIds), toArray(roomKeys),
+        toArray(names), toArray(descriptions), toArray(typeNames),
+        types.toArray(new RoomType[0]), exits, directionKeys.toArray(new String[0][]),
+        directionRooms, toArray(itemNames), items.toArray(new Item[0]), toArray(itemKeys),
+        roomItems.toArray(new int[0][]), requirementNames.toArray(new String[0][]), masks);
+  }
+
+  /**
+   * Checks where a single room's directions lead and that its requirements name items. Paths are
+   * only built for problems, since almost every room has none.
+   */
+  private List<Found> validateReferences(int roomId) {
+    List<Found> found = new ArrayList<>(0);
+    String[] keys = directionKeys.get(roomId);
+    String[] targets = directionTargets.get(roomId);
+    for (int d = 0; d < keys.length; d++) {
+      if (targets[d] != null && !roomIds.containsKey(targets[d])) {
+        found.add(new Found(roomId, DIRECTIONS, new Problem(
+            path(roomId, ".directions." + keys[d]), "leads to missing room " + targets[d])));
+      }
+    }
+
+    // Ids were recorded in the same order for every requirement that has a name
+    String[] required = requirementNames.get(roomId);
+    int[] ids = requirements.get(roomId);
+    int named = 0;
+    for (int r = 0; r < required.length; r++) {
+      if (required[r] != null && items.get(ids[named++]) == null) {
+        found.add(new Found(roomId, REQUIREMENTS, new Problem(
+            path(roomId, ".requirements[" + r + "]"),
+            "requires " + required[r] + ", which is not an item in any room")));
+      }
+    }
+    return found;
+  }
+
+  private void add(String name, String description, String type, String[] keys,
+      String[] targets, int[] ids, String[] required, int[] requiredIds) {
+    names.add(name);
+    descriptions.add(description);
+    typeNames.add(type == null ? null : shared(type));
+    types.add(RoomType.of(type));
+    directionKeys.add(keys);
+    directionTargets.add(targets);
+    roomItems.add(ids);
+    requirementNames.add(required);
+    requirements.add(requiredIds);
+  }
+
+  private String path(int roomId, String field) {
+    return "Rooms." + roomKeys.get(roomId) + field;
+  }
+
+  private void problem(int roomId, int check, Problem problem) {
+    problems.add(new Found(roomId, check, problem));
+  }
+
+  private void require(Object value, int roomId, String field) {
+    if (value == null) {
+      problem(roomId, FIELDS, missing(path(roomId, field)));
+    }
+  }
+
+  private void require(Object value, int roomId, String itemKey, String field) {
+    if (value == null) {
+      problem(roomId, ITEMS, missing(path(roomId, ".items." + itemKey + field)));
+    }
+  }
+
+  /**
+   * Returns one copy of strings that many rooms repeat, such as direction keys and room types
+   */
+  private String shared(String value) {
+    String copy = shared.putIfAbsent(value, value);
+    return copy == null ? value : copy;
+  }
+
+  /**
+   * Returns the id of the given item name, assigning a new one if needed, and remembers where
+   * the item was first defined. Names only used as requirements have no Item until one is defined.
+   */
+  private int itemId(String name, Item item, int roomId, String itemKey) {
+    String key = name.toLowerCase();
+    Integer id = itemIds.get(key);
+    if (id == null) {
+      id = itemNames.size();
+      itemIds.put(key, id);
+      itemNames.add(key);
+      items.add(item);
+      itemRooms.add(roomId);
+      itemKeys.add(itemKey);
+    } else if (items.get(id) == null && item != null) {
+      items.set(id, item);
+      itemRooms.set(id, roomId);
+      itemKeys.set(id, itemKey);
+    }
+    return id;
+  }
+
+  /**
+   * Compiles item ids into a sparse bitmask of (word index, bits) pairs, one pair per word that
+   * has any bit set, so a mask's size depends on the number of requirements, not on item ids
+   *
+   * @param itemIds
+   * @return
+   */
+  static long[] compileMask(int[] itemIds) {
+    int[] sorted = itemIds.clone();
+    Arrays.sort(sorted);
+    long[] mask = new long[sorted.length * 2];
+    int size = 0;
+    for (int itemId : sorted) {
+      int word = itemId >>> 6;
+      if (size == 0 || mask[size - 2] != word) {
+        mask[size] = word;
+        size += 2;
+      }
+      mask[size - 1] |= 1L << itemId;
+    }
+    return Arrays.copyOf(mask, size);
+  }
+
+  private static String[] toArray(List<String> values) {
+    return values.toArray(new String[0]);
+  }
+
+  private static void require(Object value, String path, List<Problem> problems) {
+    if (value == null) {
+      problems.add(missing(path));
+    }
+  }
+
+  private static Problem missing(String path) {
+    return new Problem(path, "missing");
+  }
+
+  /**
+   * A problem and where it goes in the report: by room, then by the check that found it
+   */
+  private static final class Found {
+
+    private final long order;
+    private final Problem problem;
+
+    private Found(int roomId, int check, Problem problem) {
+      this.order = (long) roomId << 2 | check;
+      this.problem = problem;
+    }
+  }
+}
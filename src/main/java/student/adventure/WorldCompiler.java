@@ -0,0 +1,359 @@
+package student.adventure;
+
+import static student.adventure.WorldFile.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import student.adventure.Objects.Configuration;
+import student.adventure.Objects.Direction;
+import student.adventure.Objects.Item;
+import student.adventure.Objects.Room;
+
+/**
+ * Compiles a world into the binary format described in WorldFile, which MappedWorld can open
+ * without parsing. Run offline as {@code WorldCompiler <world.json> <world.advw>}.
+ */
+public class WorldCompiler {
+
+  // Names, keys and types repeat across rooms, so short strings are only written once
+  private static final int SHARED_STRING_LENGTH = 64;
+
+  /**
+   * Writes the given world to the given path in the binary world format
+   *
+   * @param world
+   * @param path
+   * @throws IOException
+   * @throws IllegalArgumentException if a table of the world is too large for the format
+   */
+  public static void compile(World world, Path path) throws IOException {
+    int roomCount = world.getRoomCount();
+    int itemCount = world.getItemCount();
+    long[] header = new long[HEADER_LONGS];
+    long[] roomTable = new long[checkedSize(roomCount, ROOM_LONGS * 8) / 8];
+    long[] itemTable = new long[checkedSize(itemCount, ITEM_LONGS * 8) / 8];
+    LongList pool = new LongList();
+
+    try (ChannelWriter out = new ChannelWriter(FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+      out.skip(HEADER_LONGS * 8);
+
+      // Strings, and the pool entries that refer to them
+      StringTable strings = new StringTable(out);
+      Configuration configuration = world.getConfiguration();
+      header[H_INITIALIZATION_TEXT] = strings.write(configuration.getInitializationText());
+      header[H_VICTORY_TEXT] = strings.write(configuration.getVictoryText());
+      for (int id = 0; id < roomCount; id++) {
+        Room room = world.getRoom(id);
+        int base = id * ROOM_LONGS;
+        roomTable[base + R_KEY] = strings.write(world.getRoomKey(id));
+        roomTable[base + R_NAME] = strings.write(room.getName());
+        roomTable[base + R_DESCRIPTION] = strings.write(room.getDescription());
+        roomTable[base + R_TYPE] = strings.write(room.getType());
+
+        roomTable[base + R_DIRECTIONS] = pool.size();
+        pool.add(room.getDirections().size());
+        for (Map.Entry<String, String> exit : room.getDirections().entrySet()) {
+          pool.add(strings.write(exit.getKey()));
+          pool.add(world.getRoomId(exit.getValue()));
+        }
+
+        roomTable[base + R_ITEMS] = pool.size();
+        int[] items = world.getRoomItems(id);
+        pool.add(items.length);
+        for (int itemId : items) {
+          pool.add(itemId);
+        }
+
+        roomTable[base + R_REQUIREMENTS] = pool.size();
+        String[] requirements = room.getRequirements();
+        int[] required = new int[requirements.length];
+        pool.add(requirements.length);
+        for (int r = 0; r < requirements.length; r++) {
+          required[r] = world.getItemId(requirements[r]);
+          pool.add(strings.write(requirements[r]));
+          pool.add(required[r]);
+        }
+        long[] mask = WorldBuilder.compileMask(required);
+        pool.add(mask.length / 2);
+        for (long word : mask) {
+          pool.add(word);
+        }
+      }
+      for (int id = 0; id < itemCount; id++) {
+        Item item = world.getItem(id);
+        int base = id * ITEM_LONGS;
+        itemTable[base + I_NAME] = strings.write(item == null ? world.getItemName(id)
+            : item.getName());
+        itemTable[base + I_DESCRIPTION] = item == null ? NO_STRING
+            : strings.write(item.getDescription());
+        itemTable[base + I_VALUE] = item == null ? 0 : item.getValue();
+      }
+      header[H_STRINGS] = strings.start;
+      header[H_STRINGS_LENGTH] = out.position() - strings.start;
+      out.align();
+
+      // Fixed-size tables
+      header[H_ROOMS] = out.position();
+      out.putLongs(roomTable, roomTable.length);
+
+      header[H_EXITS] = out.position();
+      checkedSize(roomCount, Direction.count() * 4);
+      for (int id = 0; id < roomCount; id++) {
+        for (int d = 0; d < Direction.count(); d++) {
+          out.putInt(world.getExit(id, Direction.of(d)));
+        }
+      }
+      out.align();
+
+      header[H_TYPES] = out.position();
+      for (int id = 0; id < roomCount; id++) {
+        out.putByte((byte) world.getType(id).ordinal());
+      }
+      out.align();
+
+      header[H_ITEMS] = out.position();
+      out.putLongs(itemTable, itemTable.length);
+
+      header[H_POOL] = out.position();
+      header[H_POOL_LENGTH] = pool.size();
+      checkedSize(pool.size(), 8);
+      out.putLongs(pool.values, pool.size());
+
+      // Hash indexes of room keys and item names
+      int[] roomIndex = emptyIndex(roomCount);
+      for (int id = 0; id < roomCount; id++) {
+        insert(roomIndex, mix(world.getRoomKey(id).hashCode()), id);
+      }
+      header[H_ROOM_INDEX] = out.position();
+      header[H_ROOM_INDEX_CAPACITY] = roomIndex.length;
+      out.putInts(roomIndex);
+      out.align();
+
+      int[] itemIndex = emptyIndex(itemCount);
+      for (int id = 0; id < itemCount; id++) {
+        insert(itemIndex, NameIndex.hash(world.getItemName(id)), id);
+      }
+      header[H_ITEM_INDEX] = out.position();
+      header[H_ITEM_INDEX_CAPACITY] = itemIndex.length;
+      out.putInts(itemIndex);
+      out.align();
+
+      // Header last, once every offset is known
+      header[H_MAGIC] = ((long) MAGIC << 32) | VERSION;
+      header[H_ROOM_COUNT] = roomCount;
+      header[H_ITEM_COUNT] = itemCount;
+      header[H_STARTING_ROOM] = world.getStartingRoom();
+      out.seek(0);
+      out.putLongs(header, header.length);
+    }
+  }
+
+  private static int[] emptyIndex(int keys) {
+    int[] index = new int[checkedSize(indexCapacity(keys), 4) / 4];
+    Arrays.fill(index, EMPTY_SLOT);
+    return index;
+  }
+
+  private static void insert(int[] index, int hash, int id) {
+    int mask = index.length - 1;
+    int slot = hash & mask;
+    while (index[slot] != EMPTY_SLOT) {
+      slot = (slot + 1) & mask;
+    }
+    index[slot] = id;
+  }
+
+  /**
+   * Returns the size in bytes of a table, which must fit in a single mapping
+   */
+  private static int checkedSize(long entries, int entryBytes) {
+    long bytes = entries * entryBytes;
+    if (bytes > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("World is too large for the binary format");
+    }
+    return (int) bytes;
+  }
+
+  /**
+   * Writes deduplicated strings, padding so that no entry crosses a STRING_CHUNK boundary
+   */
+  private static class StringTable {
+
+    private final ChannelWriter out;
+    private final long start;
+    private final Map<String, Long> shared = new HashMap<>();
+
+    private StringTable(ChannelWriter out) {
+      this.out = out;
+      this.start = out.position();
+    }
+
+    private long write(String value) throws IOException {
+      if (value == null) {
+        return NO_STRING;
+      }
+      boolean share = value.length() <= SHARED_STRING_LENGTH;
+      if (share && shared.containsKey(value)) {
+        return shared.get(value);
+      }
+
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      long size = 4L + bytes.length;
+      if (size > STRING_CHUNK) {
+        throw new IllegalArgumentException("String is too long for the binary format");
+      }
+      long offset = out.position() - start;
+      if (offset / STRING_CHUNK != (offset + size - 1) / STRING_CHUNK) {
+        long padding = STRING_CHUNK - offset % STRING_CHUNK;
+        out.skip(padding);
+        offset += padding;
+      }
+      out.putInt(bytes.length);
+      out.putBytes(bytes);
+
+      if (share) {
+        shared.put(value, offset);
+      }
+      return offset;
+    }
+  }
+
+  /**
+   * Growable array of longs
+   */
+  private static class LongList {
+
+    private long[] values = new long[1024];
+    private int size;
+
+    private void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    private int size() {
+      return size;
+    }
+  }
+
+  /**
+   * Buffered big-endian writer over a file channel that tracks its 64-bit position
+   */
+  private static class ChannelWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private long position;
+
+    private ChannelWriter(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private long position() {
+      return position;
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    private void putByte(byte value) throws IOException {
+      ensure(1);
+      buffer.put(value);
+      position++;
+    }
+
+    private void putInt(int value) throws IOException {
+      ensure(4);
+      buffer.putInt(value);
+      position += 4;
+    }
+
+    private void putLong(long value) throws IOException {
+      ensure(8);
+      buffer.putLong(value);
+      position += 8;
+    }
+
+    private void putInts(int[] values) throws IOException {
+      for (int value : values) {
+        putInt(value);
+      }
+    }
+
+    private void putLongs(long[] values, int count) throws IOException {
+      for (int i = 0; i < count; i++) {
+        putLong(values[i]);
+      }
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+      for (int offset = 0; offset < bytes.length; ) {
+        ensure(1);
+        int length = Math.min(buffer.remaining(), bytes.length - offset);
+        buffer.put(bytes, offset, length);
+        offset += length;
+        position += length;
+      }
+    }
+
+    private void skip(long bytes) throws IOException {
+      for (long i = 0; i < bytes; i++) {
+        putByte((byte) 0);
+      }
+    }
+
+    private void align() throws IOException {
+      skip((8 - position % 8) % 8);
+    }
+
+    private void seek(long target) throws IOException {
+      flush();
+      channel.position(target);
+      position = target;
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: WorldCompiler <world.json> <world.advw>");
+      System.exit(2);
+    }
+    long start = System.nanoTime();
+    World world = WorldLoader.load(Paths.get(args[0]));
+    compile(world, Paths.get(args[1]));
+    System.out.println("Compiled " + world.getRoomCount() + " rooms and " + world.getItemCount()
+        + " items in " + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+}
@@ -0,0 +1,86 @@
+package student.adventure;
+
+/**
+ * Layout of the binary compiled world format written by WorldCompiler and read by MappedWorld.
+ * All numbers are big-endian.
+ *
+ * <pre>
+ * header   HEADER_LONGS longs, see the H_ constants
+ * strings  [int length][UTF-8 bytes] entries, referenced by their offset in this section. No entry
+ *          crosses a STRING_CHUNK boundary, so the section can be mapped in chunks.
+ * rooms    ROOM_LONGS longs per room: key, name, description and type string refs, then pool
+ *          indexes of the room's directions, items and requirements
+ * exits    int per room and Direction ordinal, NO_ROOM where there is no exit
+ * types    RoomType ordinal byte per room
+ * items    ITEM_LONGS longs per item: name and description string refs, value in cents.
+ *          Names only used as requirements have a NO_STRING description.
+ * pool     longs: directions are [count, (key ref, room id)*], items [count, sorted item id*],
+ *          requirements [count, (name ref, item id)*, pair count, (word, bits)*]
+ * indexes  open-addressing int tables of room ids by key and item ids by lowercase name
+ * </pre>
+ */
+final class WorldFile {
+
+  static final int MAGIC = 0x41445657; // "ADVW"
+  static final int VERSION = 2;
+  static final long NO_STRING = -1;
+  static final int EMPTY_SLOT = -1;
+  static final long STRING_CHUNK = 1L << 30;
+
+  static final int HEADER_LONGS = 32;
+  static final int H_MAGIC = 0;
+  static final int H_ROOM_COUNT = 1;
+  static final int H_ITEM_COUNT = 2;
+  static final int H_STARTING_ROOM = 3;
+  static final int H_INITIALIZATION_TEXT = 4;
+  static final int H_VICTORY_TEXT = 5;
+  static final int H_STRINGS = 6;
+  static final int H_STRINGS_LENGTH = 7;
+  static final int H_ROOMS = 8;
+  static final int H_EXITS = 9;
+  static final int H_TYPES = 10;
+  static final int H_ITEMS = 11;
+  static final int H_POOL = 12;
+  static final int H_POOL_LENGTH = 13;
+  static final int H_ROOM_INDEX = 14;
+  static final int H_ROOM_INDEX_CAPACITY = 15;
+  static final int H_ITEM_INDEX = 16;
+  static final int H_ITEM_INDEX_CAPACITY = 17;
+
+  static final int ROOM_LONGS = 7;
+  static final int R_KEY = 0;
+  static final int R_NAME = 1;
+  static final int R_DESCRIPTION = 2;
+  static final int R_TYPE = 3;
+  static final int R_DIRECTIONS = 4;
+  static final int R_ITEMS = 5;
+  static final int R_REQUIREMENTS = 6;
+
+  static final int ITEM_LONGS = 3;
+  static final int I_NAME = 0;
+  static final int I_DESCRIPTION = 1;
+  static final int I_VALUE = 2;
+
+  private WorldFile() {
+  }
+
+  /**
+   * Returns the capacity of an index table for the given number of keys
+   *
+   * @param keys
+   * @return power of two at least twice the number of keys
+   */
+  static int indexCapacity(int keys) {
+    return Integer.highestOneBit(Math.max(2, keys * 2) - 1) << 1;
+  }
+
+  /**
+   * Spreads a String hash code over the low bits used to pick an index slot
+   *
+   * @param hash
+   * @return
+   */
+  static int mix(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,340 @@
+package student.adventure;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import student.adventure.Objects.Direction;
+
+/**
+ * Generates valid worlds of any size in the game's JSON schema, for scale and load testing.
+ *
+ * Output depends only on the seed and parameters. Every room is derived from the seed and its own
+ * index, and exits are a function of the index, so rooms are written one at a time without keeping
+ * anything about earlier rooms; memory use does not depend on the size of the world.
+ *
+ * Rooms "Room 0" to "Room n-1" form a ring through East (and West), and with more branching a
+ * second ring with a seeded stride through North (and South). The requirement chain places
+ * "Key 1" in the starting room, and each of the evenly spaced chain rooms requires the previous
+ * key and holds the next one. The last room is the winning room, so a game is always won by
+ * walking East and taking every key on the way.
+ */
+public class WorldGenerator {
+
+  private static final Direction[] EXITS = {Direction.EAST, Direction.WEST, Direction.NORTH,
+      Direction.SOUTH};
+
+  private static final String[] ADJECTIVES = {"dusty", "silver", "broken", "ancient", "tiny",
+      "heavy", "glowing", "rusty", "velvet", "cracked", "golden", "wooden", "damp", "hollow"};
+  private static final String[] NOUNS = {"lamp", "coin", "map", "idol", "bottle", "ring", "book",
+      "compass", "mask", "candle", "bell", "scroll", "helmet", "feather"};
+  private static final String[] WORDS = {"a", "the", "corridor", "stone", "light", "shadow",
+      "door", "dust", "quiet", "old", "wall", "window", "cold", "floor", "echo", "passage", "air",
+      "faint", "smell", "of", "and", "with", "under", "narrow", "wide", "room", "ceiling"};
+
+  private final long seed;
+  private int rooms = 100;
+  private int branching = 4;
+  private int itemsPerRoom = 2;
+  private double storeFraction = 0.05;
+  private int requirementDepth = 3;
+  private int descriptionLength = 200;
+
+  /**
+   * Constructor to instantiate a generator with the given seed and default parameters
+   *
+   * @param seed
+   */
+  public WorldGenerator(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @param rooms number of rooms, at least 1
+   * @return this generator
+   */
+  public WorldGenerator rooms(int rooms) {
+    this.rooms = rooms;
+    return this;
+  }
+
+  /**
+   * @param branching exits per room, from 1 (East only) to the number of directions
+   * @return this generator
+   */
+  public WorldGenerator branching(int branching) {
+    this.branching = branching;
+    return this;
+  }
+
+  /**
+   * @param itemsPerRoom
+   * @return this generator
+   */
+  public WorldGenerator itemsPerRoom(int itemsPerRoom) {
+    this.itemsPerRoom = itemsPerRoom;
+    return this;
+  }
+
+  /**
+   * @param storeFraction share of rooms, between 0 and 1, that are stores
+   * @return this generator
+   */
+  public WorldGenerator storeFraction(double storeFraction) {
+    this.storeFraction = storeFraction;
+    return this;
+  }
+
+  /**
+   * @param requirementDepth number of locked rooms that must be passed in turn to win
+   * @return this generator
+   */
+  public WorldGenerator requirementDepth(int requirementDepth) {
+    this.requirementDepth = requirementDepth;
+    return this;
+  }
+
+  /**
+   * @param descriptionLength characters in each room description, give or take one
+   * @return this generator
+   */
+  public WorldGenerator descriptionLength(int descriptionLength) {
+    this.descriptionLength = descriptionLength;
+    return this;
+  }
+
+  /**
+   * Writes the world to the given file
+   *
+   * @param path
+   * @throws IOException
+   * @throws IllegalArgumentException if the parameters cannot make a valid world
+   */
+  public void write(Path path) throws IOException {
+    try (Writer out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8),
+        1 << 16)) {
+      write(out);
+    }
+  }
+
+  /**
+   * Writes the world to the given writer
+   *
+   * @param out
+   * @throws IOException
+   * @throws IllegalArgumentException if the parameters cannot make a valid world
+   */
+  public void write(Writer out) throws IOException {
+    checkParameters();
+    JsonWriter json = new JsonWriter(out);
+    json.beginObject();
+
+    json.name("Configuration").beginObject()
+        .name("startingRoom").value(roomKey(0))
+        .name("initializationText").value("Welcome to a generated world of " + rooms + " rooms!")
+        .name("victoryText").value("You found your way through. Thanks for playing!")
+        .endObject();
+
+    json.name("Rooms").beginObject();
+    for (int i = 0; i < rooms; i++) {
+      writeRoom(json, i);
+    }
+    json.endObject();
+
+    json.endObject();
+    json.flush();
+  }
+
+  private void writeRoom(JsonWriter json, int room) throws IOException {
+    SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + room);
+    int chain = chainIndex(room);
+
+    // Chain rooms are never stores, since their keys must be free to take
+    String type = "room";
+    if (room == rooms - 1) {
+      type = "win";
+    } else if (chain < 0 && random.nextDouble() < storeFraction) {
+      type = "store";
+    }
+
+    json.name(roomKey(room)).beginObject();
+    json.name("name").value(roomKey(room));
+    json.name("type").value(type);
+    json.name("description").value(description(random));
+
+    json.name("items").beginObject();
+    for (int k = 0; k < itemsPerRoom; k++) {
+      String adjective = ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+      String noun = NOUNS[random.nextInt(NOUNS.length)];
+      String name = capitalize(adjective) + " " + capitalize(noun) + " " + room + "." + k;
+      writeItem(json, name, "A " + adjective + " " + noun + ".", 1 + random.nextInt(100));
+    }
+    if (chain >= 0 && chain < requirementDepth) {
+      writeItem(json, keyName(chain + 1), "It should open the way further east.", 1);
+    }
+    json.endObject();
+
+    json.name("requirements").beginArray();
+    if (chain > 0) {
+      json.value(keyName(chain));
+    }
+    json.endArray();
+
+    json.name("directions").beginObject();
+    for (int d = 0; d < branching; d++) {
+      // Even exits lead forward along a ring and odd ones back along it
+      int stride = stride(d / 2);
+      int target = d % 2 == 0 ? (room + stride) % rooms : (room - stride + rooms) % rooms;
+      json.name(EXITS[d].getKey()).value(roomKey(target));
+    }
+    json.endObject();
+
+    json.endObject();
+  }
+
+  private void writeItem(JsonWriter json, String name, String description, int value)
+      throws IOException {
+    json.name(name.toLowerCase()).beginObject()
+        .name("name").value(name)
+        .name("description").value(description)
+        .name("value").value(value)
+        .endObject();
+  }
+
+  /**
+   * Returns the position of the given room in the requirement chain, 0 for the starting room, or
+   * -1 if it is not part of the chain. Chain rooms are spread evenly and end at the last room.
+   */
+  private int chainIndex(int room) {
+    if (room == 0) {
+      return 0;
+    }
+    if (requirementDepth == 0) {
+      return -1;
+    }
+    long last = rooms - 1;
+    int index = (int) ((room * (long) requirementDepth + last - 1) / last);
+    return chainRoom(index) == room ? index : -1;
+  }
+
+  private int chainRoom(int index) {
+    return (int) (index * (long) (rooms - 1) / requirementDepth);
+  }
+
+  /**
+   * Returns the stride of the given ring; the first ring is walked one room at a time
+   */
+  private int stride(int ring) {
+    if (ring == 0 || rooms < 3) {
+      return 1;
+    }
+    return 2 + new SplittableRandom(seed ^ ring).nextInt(rooms - 2);
+  }
+
+  /**
+   * Returns a sentence of random words, cut to the description length or one character shorter
+   */
+  private String description(SplittableRandom random) {
+    if (descriptionLength == 0) {
+      return "";
+    }
+    StringBuilder description = new StringBuilder(descriptionLength + 16);
+    while (description.length() < descriptionLength) {
+      description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    description.setLength(descriptionLength - 1);
+    if (description.length() > 0 && description.charAt(description.length() - 1) == ' ') {
+      description.setLength(description.length() - 1);
+    }
+    if (description.length() > 0) {
+      description.setCharAt(0, Character.toUpperCase(description.charAt(0)));
+    }
+    return description.append('.').toString();
+  }
+
+  private void checkParameters() {
+    if (rooms < 1) {
+      throw new IllegalArgumentException("A world needs at least one room");
+    }
+    if (branching < 1 || branching > EXITS.length) {
+      throw new IllegalArgumentException("Branching must be between 1 and " + EXITS.length);
+    }
+    if (itemsPerRoom < 0 || descriptionLength < 0) {
+      throw new IllegalArgumentException("Item and description counts cannot be negative");
+    }
+    if (storeFraction < 0 || storeFraction > 1) {
+      throw new IllegalArgumentException("Store fraction must be between 0 and 1");
+    }
+    if (requirementDepth < 0 || requirementDepth > rooms - 1) {
+      throw new IllegalArgumentException("Requirement depth must be between 0 and rooms - 1");
+    }
+  }
+
+  static String roomKey(int room) {
+    return "Room " + room;
+  }
+
+  static String keyName(int index) {
+    return "Key " + index;
+  }
+
+  private static String capitalize(String word) {
+    return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: WorldGenerator <world.json> [seed=N] [rooms=N] [branching=N]"
+          + " [items=N] [stores=F] [depth=N] [description=N]");
+      System.exit(2);
+    }
+    long seed = 0;
+    for (int i = 1; i < args.length; i++) {
+      if (args[i].startsWith("seed=")) {
+        seed = Long.parseLong(args[i].substring("seed=".length()));
+      }
+    }
+
+    WorldGenerator generator = new WorldGenerator(seed);
+    for (int i = 1; i < args.length; i++) {
+      String[] parameter = args[i].split("=", 2);
+      if (parameter.length != 2) {
+        throw new IllegalArgumentException("Expected name=value: " + args[i]);
+      }
+      switch (parameter[0]) {
+        case "seed":
+          break;
+        case "rooms":
+          generator.rooms(Integer.parseInt(parameter[1]));
+          break;
+        case "branching":
+          generator.branching(Integer.parseInt(parameter[1]));
+          break;
+        case "items":
+          generator.itemsPerRoom(Integer.parseInt(parameter[1]));
+          break;
+        case "stores":
+          generator.storeFraction(Double.parseDouble(parameter[1]));
+          break;
+        case "depth":
+          generator.requirementDepth(Integer.parseInt(parameter[1]));
+          break;
+        case "description":
+          generator.descriptionLength(Integer.parseInt(parameter[1]));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown parameter: " + parameter[0]);
+      }
+    }
+
+    long start = System.nanoTime();
+    generator.write(Paths.get(args[0]));
+    System.out.println("Generated " + generator.rooms + " rooms in "
+        + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+}
@@ -0,0 +1,88 @@
+package student.adventure;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import student.adventure.Objects.Configuration;
+import student.adventure.Objects.Room;
+
+/**
+ * Streams game data JSON into a World. Only one room is deserialized at a time and handed straight
+ * to a WorldBuilder, so peak memory while loading stays close to the size of the compiled world.
+ * Worlds compiled by WorldCompiler are recognized, memory-mapped and paged in room by room instead.
+ */
+public class WorldLoader {
+
+  private static final Gson gson = new Gson();
+
+  /**
+   * Loads the world described by the JSON or compiled world file at the given path
+   *
+   * @param path
+   * @return
+   * @throws IOException
+   * @throws IllegalArgumentException if the JSON is malformed or has invalid schema / data
+   */
+  public static World load(Path path) throws IOException {
+    if (isCompiled(path)) {
+      return new PagedWorld(MappedWorld.open(path));
+    }
+    try (Reader reader = Files.newBufferedReader(path)) {
+      return load(reader);
+    }
+  }
+
+  /**
+   * Checks if the file at the given path starts like a compiled world
+   */
+  private static boolean isCompiled(Path path) throws IOException {
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+      return in.readInt() == WorldFile.MAGIC;
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Loads the world described by the JSON read from the given reader
+   *
+   * @param reader
+   * @return
+   * @throws IOException
+   * @throws IllegalArgumentException if the JSON is malformed or has invalid schema / data
+   */
+  public static World load(Reader reader) throws IOException {
+    WorldBuilder builder = new WorldBuilder();
+    JsonReader json = new JsonReader(reader);
+    try {
+      json.beginObject();
+      while (json.hasNext()) {
+        String name = json.nextName();
+        if (name.equals("Configuration")) {
+          builder.configuration(gson.<Configuration>fromJson(json, Configuration.class));
+        } else if (name.equals("Rooms")) {
+          json.beginObject();
+          while (json.hasNext()) {
+            String key = json.nextName();
+            builder.room(key, gson.<Room>fromJson(json, Room.class));
+          }
+          json.endObject();
+        } else {
+          json.skipValue();
+        }
+      }
+      json.endObject();
+    } catch (JsonParseException | IllegalStateException | EOFException
+        | MalformedJsonException e) {
+      throw new IllegalArgumentException("Input JSON is malformed: " + e.getMessage(), e);
+    }
+    return builder.build();
+  }
+}
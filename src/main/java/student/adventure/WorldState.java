@@ -0,0 +1,287 @@
+package student.adventure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import student.adventure.Objects.Item;
+
+/**
+ * One game's changes to the items of a shared World. Rooms are never modified; instead each
+ * changed room gets a delta of the items taken from it and dropped into it, so memory grows with
+ * what the player changed rather than with the size of the world.
+ *
+ * A WorldState belongs to one game and is not thread-safe; SharedWorldState shares one between
+ * players.
+ */
+public class WorldState {
+
+  private final World world;
+  private final Map<Integer, RoomDelta> deltas;
+
+  /**
+   * Constructor to instantiate an unchanged state of the given world
+   *
+   * @param world
+   */
+  WorldState(World world) {
+    this(world, false);
+  }
+
+  /**
+   * Constructor for subclasses whose rooms may be changed from many threads, as long as each
+   * room is only changed by one at a time
+   *
+   * @param world
+   * @param concurrent
+   */
+  WorldState(World world, boolean concurrent) {
+    this.world = world;
+    this.deltas = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+  }
+
+  /**
+   * Returns the items currently in the given room
+   *
+   * @param roomId
+   * @return
+   */
+  public Collection<Item> getItems(int roomId) {
+    List<Item> items = new ArrayList<>();
+    RoomDelta delta = deltas.get(roomId);
+    for (int itemId : world.getRoomItems(roomId)) {
+      if (delta == null || !delta.removed.contains(itemId)) {
+        items.add(world.getItem(itemId));
+      }
+    }
+    if (delta != null) {
+      for (int i = 0; i < delta.added.size; i++) {
+        items.add(world.getItem(delta.added.ids[i]));
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Returns the rendered view of the given room. Unchanged rooms share the world's cached view;
+   * changed rooms keep their own, which is dropped whenever an item is added or removed.
+   *
+   * @param roomId
+   * @return
+   */
+  public String describe(int roomId) {
+    RoomDelta delta = deltas.get(roomId);
+    if (delta == null) {
+      String view = world.getViews().get(roomId);
+      if (view == null) {
+        view = Helper.renderRoom(world, roomId, getItems(roomId));
+        world.getViews().put(roomId, view);
+      }
+      return view;
+    }
+    if (delta.view == null) {
+      delta.view = Helper.renderRoom(world, roomId, getItems(roomId));
+    }
+    return delta.view;
+  }
+
+  /**
+   * Checks if the given room currently contains the given item
+   *
+   * @param roomId
+   * @param itemId
+   * @return
+   */
+  public boolean hasItem(int roomId, int itemId) {
+    RoomDelta delta = deltas.get(roomId);
+    if (delta == null) {
+      return inTemplate(roomId, itemId);
+    }
+    if (delta.added.contains(itemId)) {
+      return true;
+    }
+    return !delta.removed.contains(itemId) && inTemplate(roomId, itemId);
+  }
+
+  /**
+   * Removes the given item from the given room
+   *
+   * @param roomId
+   * @param itemId
+   * @return whether the room contained the item
+   */
+  public boolean removeItem(int roomId, int itemId) {
+    if (!hasItem(roomId, itemId)) {
+      return false;
+    }
+
+    RoomDelta delta = deltaFor(roomId);
+    if (!delta.added.remove(itemId)) {
+      delta.removed.add(itemId);
+    }
+    delta.view = null;
+    release(roomId, delta);
+    return true;
+  }
+
+  /**
+   * Adds the given item to the given room
+   *
+   * @param roomId
+   * @param itemId
+   * @return whether the item was added, i.e. the room did not contain it yet
+   */
+  public boolean addItem(int roomId, int itemId) {
+    if (hasItem(roomId, itemId)) {
+      return false;
+    }
+
+    RoomDelta delta = deltaFor(roomId);
+    if (!delta.removed.remove(itemId)) {
+      delta.added.add(itemId);
+    }
+    delta.view = null;
+    release(roomId, delta);
+    return true;
+  }
+
+  /**
+   * Returns the lock to hold while making changes to the given room that must happen together
+   * with changes elsewhere, such as a trade. Only a shared state is changed by more than one
+   * thread, so this one is its own lock.
+   *
+   * @param roomId
+   * @return
+   */
+  Object lock(int roomId) {
+    return this;
+  }
+
+  /**
+   * Returns whether other players share this state and see its changes
+   *
+   * @return
+   */
+  public boolean isShared() {
+    return false;
+  }
+
+  /**
+   * Returns the number of rooms that differ from the world template
+   *
+   * @return
+   */
+  public int changedRooms() {
+    return deltas.size();
+  }
+
+  /**
+   * Returns the ids of the rooms that differ from the world template
+   *
+   * @return
+   */
+  int[] getChangedRooms() {
+    // Shared states may change while they are read, so the size is only a hint
+    int[] rooms = new int[deltas.size()];
+    int i = 0;
+    for (int roomId : deltas.keySet()) {
+      if (i == rooms.length) {
+        rooms = Arrays.copyOf(rooms, i * 2 + 1);
+      }
+      rooms[i++] = roomId;
+    }
+    return i == rooms.length ? rooms : Arrays.copyOf(rooms, i);
+  }
+
+  /**
+   * Returns the ids of the items dropped into the given room
+   *
+   * @param roomId
+   * @return
+   */
+  int[] getAdded(int roomId) {
+    RoomDelta delta = deltas.get(roomId);
+    return delta == null ? new int[0] : Arrays.copyOf(delta.added.ids, delta.added.size);
+  }
+
+  /**
+   * Returns the ids of the items taken from the given room
+   *
+   * @param roomId
+   * @return
+   */
+  int[] getRemoved(int roomId) {
+    RoomDelta delta = deltas.get(roomId);
+    return delta == null ? new int[0] : Arrays.copyOf(delta.removed.ids, delta.removed.size);
+  }
+
+  private boolean inTemplate(int roomId, int itemId) {
+    return world.hasItem(roomId, itemId);
+  }
+
+  private RoomDelta deltaFor(int roomId) {
+    RoomDelta delta = deltas.get(roomId);
+    if (delta == null) {
+      delta = new RoomDelta();
+      deltas.put(roomId, delta);
+    }
+    return delta;
+  }
+
+  /**
+   * Forgets the delta of a room that is back to its template state
+   */
+  private void release(int roomId, RoomDelta delta) {
+    if (delta.added.size == 0 && delta.removed.size == 0) {
+      deltas.remove(roomId);
+    }
+  }
+
+  /**
+   * Items taken from and dropped into a single room, and the room's view as last rendered
+   */
+  private static class RoomDelta {
+
+    private final ItemIds added = new ItemIds();
+    private final ItemIds removed = new ItemIds();
+    private String view;
+  }
+
+  /**
+   * Small unordered set of item ids. Rooms hold few items, so a linear scan beats hashing.
+   */
+  private static class ItemIds {
+
+    private int[] ids = new int[2];
+    private int size;
+
+    private boolean contains(int id) {
+      for (int i = 0; i < size; i++) {
+        if (ids[i] == id) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void add(int id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+
+    private boolean remove(int id) {
+      for (int i = 0; i < size; i++) {
+        if (ids[i] == id) {
+          ids[i] = ids[--size];
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
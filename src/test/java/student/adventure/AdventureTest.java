@@ -1,13 +1,45 @@
 package student.adventure;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import org.junit.Test;
+import student.adventure.Objects.Direction;
+import student.adventure.Objects.RoomType;
 
 public class AdventureTest {
 
@@ -19,6 +51,48 @@ public class AdventureTest {
    *    - Broken Map (directions that lead to rooms that don't exist) --> Exception
    *    - Empty JSON --> Exception
    *
+   * - Streaming loader
+   *    - Sections may come in any order
+   *    - Malformed JSON --> Exception, including JSON the reader rejects outright
+   *
+   * - Generated worlds
+   *    - The same seed and parameters give the same world
+   *    - Generated worlds pass validation and can be won
+   *
+   * - Solver
+   *    - Finds a win as short as the hand-written one and it replays to victory
+   *    - Wins generated worlds, proves locked worlds unwinnable, respects its memory budget
+   *
+   * - Routes
+   *    - Routes avoid rooms the player cannot enter yet, and open up once they can
+   *    - Unknown rooms and the current room --> FAILURE
+   *    - Routes on generated worlds are as short as a plain breadth-first search finds
+   *
+   * - Saved games
+   *    - Loading a save restores the room, money, inventory and every changed room
+   *    - Saves are by name, so they load into a rebuilt world with different ids
+   *    - Unknown saves, bad names and corrupt data --> FAILURE, leaving the game as it was
+   *    - Each server session only sees its own saves, which end with it
+   *
+   * - Metrics
+   *    - Histogram percentiles are within a bucket's precision of the true values
+   *    - Commands are counted by verb, result and room entered
+   *    - Counts recorded by many threads into their own stripes add up exactly
+   *    - Room visits stay in fixed tables; rooms that do not fit are counted as untracked
+   *
+   * - Session journal
+   *    - Sessions are rebuilt from the journal alone, from a snapshot alone and from both
+   *    - Ended sessions stay ended; a record cut short by a crash is ignored
+   *    - Loaded games are recovered as loaded
+   *    - Only commands that change the game are recorded, so looking around and saving are not
+   *    - A session that no longer replays as played is skipped and ended, the rest recover
+   *
+   * - Compiled binary worlds
+   *    - Mapped world matches the JSON world room by room
+   *    - IO loads compiled worlds and plays them the same way
+   *    - Paged rooms stay within the cache capacity and neighbours are fetched ahead
+   *    - Closing a paged world stops its prefetch thread; a rejected prefetch is retried later
+   *
    * - Test each Action thoroughly
    *    - Movement
    *        - Test invalid direction
@@ -28,10 +102,46 @@ public class AdventureTest {
    * - Test CUSTOM FEATURE (store)
    *    - Check buy/sell with no money
    *        - Make sure inventory & money update
+   *    - Money is exact to the cent after a million trades, and old float saves still load
+   *    - Players racing to trade in one shared store never lose, duplicate or get free items
+   *    - Of players racing to buy the same item, exactly one gets it and only they pay
    *
    * - Test Room Requirements
    *    - Check that player CANNOT enter room without meeting requirements
    *    - Check that player CAN enter room if meets requirements
+   *
+   * - Test compiled requirements
+   *    - Every missing item is reported
+   *
+   * - Test shared worlds
+   *    - Engines on one world do not see each other's changes
+   *    - Only changed rooms are tracked per engine
+   *    - Players in a shared world see each other's takes and drops, and racing players never
+   *      duplicate or lose an item
+   *
+   * - Test validation
+   *    - Every problem is reported with its JSON path, not just the first
+   *    - Dangling directions, duplicate items and unknown requirements are problems
+   *
+   * - Test compiled room graph
+   *    - Exits resolve to room ids, missing exits --> NO_ROOM
+   *    - Room types compile to RoomType
+   *
+   * - Test command parsing
+   *    - Verbs and arguments are case-insensitive and trimmed
+   *    - Unique abbreviations and aliases resolve, ambiguous ones do not
+   *    - Results without arguments are shared; messages are formatted when read and keep
+   *      the argument they were given
+   *
+   * - Test room rendering
+   *    - Unchanged rooms share one rendered view across games
+   *    - Taking or dropping an item renders the room again for that game only
+   *    - The cache never holds more rooms than its capacity; a room evicts the one in its slot
+   *
+   * - Test the game loop
+   *    - Long scripted sessions run in constant stack depth
+   *    - Scripted sessions end on victory
+   *    - Output goes to the given sink
    */
 
   @Test(expected = IllegalArgumentException.class)
@@ -57,6 +167,293 @@ public class AdventureTest {
     manager.start("Ikenberry Commons");
   }
 
+  @Test
+  public void testValidationReportsEveryProblem() throws IOException {
+    String json = "{\"Configuration\": {\"startingRoom\": \"Hall\", \"initializationText\": \"Hi\","
+        + " \"victoryText\": \"Bye\"},"
+        + " \"Rooms\": {\"Hall\": {\"name\": \"Hall\", \"type\": \"room\","
+        + " \"description\": \"A hall.\", \"requirements\": [\"Ghost Key\"],"
+        + " \"items\": {\"lamp\": {\"name\": \"Lamp\", \"description\": \"A lamp.\", \"value\": 1}},"
+        + " \"directions\": {\"North\": \"Attic\"}},"
+        + " \"Cellar\": {\"type\": \"room\", \"description\": \"Damp.\", \"requirements\": [],"
+        + " \"items\": {\"old lamp\": {\"name\": \"LAMP\", \"description\": \"Rusty.\", \"value\": 2}},"
+        + " \"directions\": {}}}}";
+    try {
+      WorldLoader.load(new StringReader(json));
+      fail();
+    } catch (InvalidWorldException e) {
+      List<String> paths = new ArrayList<>();
+      for (ValidationReport.Problem problem : e.getReport().getProblems()) {
+        paths.add(problem.getPath());
+      }
+      assertEquals(Arrays.asList("Rooms.Hall.directions.North", "Rooms.Hall.requirements[0]",
+          "Rooms.Cellar.name", "Rooms.Cellar.items.old lamp"), paths);
+    }
+  }
+
+  @Test
+  public void testLoaderAcceptsAnySectionOrder() throws IOException {
+    String json = "{\"Rooms\": {\"Hall\": {\"name\": \"Hall\", \"type\": \"room\","
+        + " \"description\": \"A hall.\", \"items\": {}, \"requirements\": [],"
+        + " \"directions\": {}}}, \"Extra\": [1, 2],"
+        + " \"Configuration\": {\"startingRoom\": \"Hall\", \"initializationText\": \"Hi\","
+        + " \"victoryText\": \"Bye\"}}";
+    World world = WorldLoader.load(new StringReader(json));
+
+    assertEquals(1, world.getRoomCount());
+    assertEquals("Hall", world.getRoom(world.getStartingRoom()).getName());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMalformedJSON() throws IOException {
+    WorldLoader.load(new StringReader("{\"Rooms\": {\"Hall\": "));
+  }
+
+  @Test
+  public void testCorruptJSONIsMalformed() throws IOException {
+    // The reader itself rejects these before any room is parsed
+    for (String json : new String[] {"not json", "{\"Rooms\" {}}", "{\"Rooms\": {]}", "{;}"}) {
+      try {
+        WorldLoader.load(new StringReader(json));
+        fail(json);
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().startsWith("Input JSON is malformed"));
+      }
+    }
+  }
+
+  @Test
+  public void testGeneratorIsDeterministic() throws IOException {
+    StringWriter first = new StringWriter();
+    StringWriter second = new StringWriter();
+    StringWriter other = new StringWriter();
+    new WorldGenerator(42).rooms(50).write(first);
+    new WorldGenerator(42).rooms(50).write(second);
+    new WorldGenerator(43).rooms(50).write(other);
+
+    assertEquals(first.toString(), second.toString());
+    assertFalse(first.toString().equals(other.toString()));
+  }
+
+  @Test
+  public void testGeneratedWorldIsValidAndWinnable() throws IOException {
+    StringWriter json = new StringWriter();
+    new WorldGenerator(7).rooms(200).branching(4).itemsPerRoom(3).storeFraction(0.2)
+        .requirementDepth(5).descriptionLength(80).write(json);
+    World world = WorldLoader.load(new StringReader(json.toString()));
+    assertEquals(200, world.getRoomCount());
+    assertEquals(600 + 5, world.getItemCount());
+
+    // Walking East and picking up every key wins the game
+    GameEngine engine = new GameEngine(world);
+    Result result = null;
+    for (int step = 0; step < 200 && !engine.isFinished(); step++) {
+      for (int key = 1; key <= 5; key++) {
+        engine.takeItem(WorldGenerator.keyName(key));
+      }
+      result = engine.changeDirection("East");
+      assertFalse(result.getState() == State.FAILURE);
+    }
+    assertEquals(State.VICTORY, result.getState());
+  }
+
+  @Test
+  public void testSolverFindsShortestWin() throws IOException {
+    World world = WorldLoader.load(Paths.get("src/main/java/data/data.json"));
+    Solver.Solution solution = new Solver(world).solve(64 << 20);
+
+    // As short as the hand-written winning script, and it wins when replayed
+    assertEquals(Solver.Solution.Status.WON, solution.getStatus());
+    assertEquals(22, solution.getCommands().size());
+    assertEquals(State.VICTORY, replay(world, solution.getCommands()));
+  }
+
+  @Test
+  public void testSolverWinsGeneratedWorlds() throws IOException {
+    for (long seed = 0; seed < 5; seed++) {
+      StringWriter json = new StringWriter();
+      new WorldGenerator(seed).rooms(300).requirementDepth(4).storeFraction(0.2).write(json);
+      World world = WorldLoader.load(new StringReader(json.toString()));
+      Solver.Solution solution = new Solver(world).solve(64 << 20);
+
+      assertEquals(Solver.Solution.Status.WON, solution.getStatus());
+      assertEquals(State.VICTORY, replay(world, solution.getCommands()));
+    }
+  }
+
+  @Test
+  public void testSolverProvesNoWin() throws IOException {
+    // The key to the vault is locked inside the vault
+    String json = "{\"Configuration\": {\"startingRoom\": \"Hall\", \"initializationText\": \"Hi\","
+        + " \"victoryText\": \"Bye\"}, \"Rooms\": {"
+        + " \"Hall\": {\"name\": \"Hall\", \"type\": \"room\", \"description\": \"A hall.\","
+        + " \"items\": {}, \"requirements\": [], \"directions\": {\"East\": \"Vault\"}},"
+        + " \"Vault\": {\"name\": \"Vault\", \"type\": \"win\", \"description\": \"Gold.\","
+        + " \"items\": {\"key\": {\"name\": \"Key\", \"description\": \"A key.\", \"value\": 1}},"
+        + " \"requirements\": [\"Key\"], \"directions\": {\"West\": \"Hall\"}}}}";
+    World world = WorldLoader.load(new StringReader(json));
+
+    assertEquals(Solver.Solution.Status.UNWINNABLE, new Solver(world).solve(1 << 20).getStatus());
+  }
+
+  @Test
+  public void testSolverStopsAtMemoryBudget() throws IOException {
+    World world = WorldLoader.load(Paths.get("src/main/java/data/data.json"));
+    Solver.Solution solution = new Solver(world).solve(10 << 10);
+
+    assertEquals(Solver.Solution.Status.BUDGET_EXCEEDED, solution.getStatus());
+    assertEquals(null, solution.getCommands());
+  }
+
+  @Test
+  public void testCompiledWorldMatchesJSON() throws IOException {
+    World json = WorldLoader.load(Paths.get("src/main/java/data/data.json"));
+    Path compiled = Files.createTempFile("world", ".advw");
+    try {
+      WorldCompiler.compile(json, compiled);
+      World mapped = WorldLoader.load(compiled);
+
+      assertTrue(mapped instanceof PagedWorld);
+      assertEquals(json.getRoomCount(), mapped.getRoomCount());
+      assertEquals(json.getItemCount(), mapped.getItemCount());
+      assertEquals(json.getStartingRoom(), mapped.getStartingRoom());
+      assertEquals(json.getConfiguration().getVictoryText(),
+          mapped.getConfiguration().getVictoryText());
+      for (int id = 0; id < json.getRoomCount(); id++) {
+        String key = json.getRoomKey(id);
+        assertEquals(id, mapped.getRoomId(key));
+        assertEquals(json.getRoom(id).getName(), mapped.getRoom(id).getName());
+        assertEquals(json.getDescription(id), mapped.getDescription(id));
+        assertEquals(json.getType(id), mapped.getType(id));
+        assertEquals(json.getRoom(id).getDirections(), mapped.getRoom(id).getDirections());
+        assertArrayEquals(json.getRoomItems(id), mapped.getRoomItems(id));
+        for (Direction direction : Direction.values()) {
+          assertEquals(json.getExit(id, direction), mapped.getExit(id, direction));
+        }
+      }
+      for (int id = 0; id < json.getItemCount(); id++) {
+        assertEquals(id, mapped.getItemId(json.getItemName(id).toUpperCase()));
+      }
+      assertEquals(World.NO_ITEM, mapped.getItemId("nothing"));
+    } finally {
+      Files.delete(compiled);
+    }
+  }
+
+  @Test
+  public void testPagedWorldBoundsCache() throws IOException {
+    Path compiled = Files.createTempFile("world", ".advw");
+    try {
+      World json = WorldLoader.load(Paths.get("src/main/java/data/data.json"));
+      WorldCompiler.compile(json, compiled);
+      PagedWorld world = new PagedWorld(MappedWorld.open(compiled), 2, Runnable::run);
+
+      int start = world.getStartingRoom();
+      assertEquals(json.getDescription(start), world.getRoom(start).getDescription());
+      // Each visit also fetches the room's neighbours, but never more than fit in the cache
+      for (int id = 0; id < world.getRoomCount(); id++) {
+        assertEquals(json.getRoom(id).getName(), world.getRoom(id).getName());
+        assertTrue(world.cachedRooms() <= 2);
+      }
+      world = new PagedWorld(MappedWorld.open(compiled), 16, Runnable::run);
+      world.getRoom(start);
+      for (Direction direction : Direction.values()) {
+        int neighbour = world.getExit(start, direction);
+        if (neighbour != World.NO_ROOM) {
+          assertTrue(world.isCached(neighbour));
+        }
+      }
+      // Routes over a paged world are indexed off the heap but come out the same
+      Inventory inventory = new Player(json).getInventory();
+      for (int id = 0; id < world.getRoomCount(); id++) {
+        assertArrayEquals(json.getRoutes().route(start, id, inventory),
+            world.getRoutes().route(start, id, inventory));
+      }
+    } finally {
+      Files.delete(compiled);
+    }
+  }
+
+  @Test
+  public void testPagedWorldCloseStopsPrefetching() throws Exception {
+    Path compiled = Files.createTempFile("world", ".advw");
+    try {
+      WorldCompiler.compile(WorldLoader.load(Paths.get("src/main/java/data/data.json")),
+          compiled);
+      PagedWorld world = new PagedWorld(MappedWorld.open(compiled));
+      world.getRoom(world.getStartingRoom());
+      world.close();
+
+      // The prefetch thread winds down once shut down; rooms still page in without it
+      long deadline = System.currentTimeMillis() + 5000;
+      while (prefetchThreadAlive() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertFalse(prefetchThreadAlive());
+      for (int id = 0; id < world.getRoomCount(); id++) {
+        assertNotNull(world.getRoom(id));
+      }
+      assertFalse(prefetchThreadAlive());
+
+      // A rejected drain is asked for again on the next visit, and a closed world asks for none
+      final AtomicInteger submitted = new AtomicInteger();
+      world = new PagedWorld(MappedWorld.open(compiled), 16, task -> {
+        if (submitted.incrementAndGet() == 1) {
+          throw new RejectedExecutionException();
+        }
+        task.run();
+      });
+      int start = world.getStartingRoom();
+      world.getRoom(start);
+      world.getRoom(start);
+      assertEquals(2, submitted.get());
+      for (Direction direction : Direction.values()) {
+        int neighbour = world.getExit(start, direction);
+        if (neighbour != World.NO_ROOM) {
+          assertTrue(world.isCached(neighbour));
+        }
+      }
+      world.close();
+      for (int id = 0; id < world.getRoomCount(); id++) {
+        world.getRoom(id);
+      }
+      assertEquals(2, submitted.get());
+    } finally {
+      Files.delete(compiled);
+    }
+  }
+
+  private static boolean prefetchThreadAlive() {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("room-prefetch") && thread.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Test
+  public void testPlayCompiledWorld() throws IOException {
+    Path compiled = Files.createTempFile("world", ".advw");
+    try {
+      WorldCompiler.compile(WorldLoader.load(Paths.get("src/main/java/data/data.json")),
+          compiled);
+      IO manager = new IO(compiled);
+      manager.start("Vending Machine");
+      GameEngine engine = manager.getEngine();
+
+      assertEquals(State.FAILURE, engine.buyItem("blood-stained wassaja icard").getState());
+      engine.getPlayer().addMoney(10000);
+      assertEquals(State.SUCCESS, engine.buyItem("blood-stained wassaja icard").getState());
+      assertEquals(0, engine.getRoomItems().size());
+      engine.changeDirection("west");
+      engine.changeDirection("west");
+      assertEquals(State.VICTORY, engine.changeDirection("west").getState());
+    } finally {
+      Files.delete(compiled);
+    }
+  }
+
   @Test
   public void testMissingRoomRequirements() throws IOException {
     Path path = Paths.get("src/main/java/data/data.json");
@@ -140,7 +537,7 @@ public class AdventureTest {
     manager.start("Vending Machine");
 
     GameEngine engine = manager.getEngine();
-    engine.getPlayer().addMoney(100F);
+    engine.getPlayer().addMoney(10000);
     engine.buyItem("Blood-Stained Wassaja iCard");
 
     // Check if item is in player's inventory
@@ -154,7 +551,7 @@ public class AdventureTest {
     manager.start("Vending Machine");
 
     GameEngine engine = manager.getEngine();
-    engine.getPlayer().addMoney(110F);
+    engine.getPlayer().addMoney(11000);
     engine.buyItem("Blood-Stained Wassaja iCard");
     engine.sellItem("Blood-stained wassaja icard");
 
@@ -184,7 +581,7 @@ public class AdventureTest {
     manager.start("Vending Machine");
 
     GameEngine engine = manager.getEngine();
-    engine.getPlayer().addMoney(100F);
+    engine.getPlayer().addMoney(10000);
     engine.buyItem("Blood-Stained Wassaja iCard");
 
     // Check that there is exactly one item in player's inventory
@@ -241,7 +638,7 @@ public class AdventureTest {
     GameEngine engine = manager.getEngine();
 
     // Get item necessary for win
-    engine.getPlayer().addMoney(100F);
+    engine.getPlayer().addMoney(10000);
     engine.buyItem("blood-stained wassaja icard");
 
     // Travel to victory room
@@ -271,10 +668,10 @@ public class AdventureTest {
     manager.start("Vending Machine");
 
     GameEngine engine = manager.getEngine();
-    engine.getPlayer().addMoney(100F);
+    engine.getPlayer().addMoney(10000);
     engine.buyItem("blood-stained wassaja icard");
 
-    assertEquals(0.0, engine.getPlayer().getMoney().doubleValue(), 0.01);
+    assertEquals(0, engine.getPlayer().getMoney());
   }
 
   @Test
@@ -284,10 +681,849 @@ public class AdventureTest {
     manager.start("Vending Machine");
 
     GameEngine engine = manager.getEngine();
-    engine.getPlayer().addMoney(100F);
+    engine.getPlayer().addMoney(10000);
     engine.buyItem("blood-stained wassaja icard");
     engine.sellItem("blood-stained wassaja icard");
 
-    assertEquals(100.0, engine.getPlayer().getMoney().doubleValue(), 0.01);
+    assertEquals(10000, engine.getPlayer().getMoney());
+  }
+
+  @Test
+  public void testSharedWorldMovesEachItemOnce() throws Exception {
+    StringBuilder json = new StringBuilder("{\"Configuration\": {\"startingRoom\": \"Hall\","
+        + " \"initializationText\": \"Hi\", \"victoryText\": \"Bye\"}, \"Rooms\": {\"Hall\":"
+        + " {\"name\": \"Hall\", \"type\": \"room\", \"description\": \"A hall.\","
+        + " \"requirements\": [], \"directions\": {}, \"items\": {");
+    for (int i = 0; i < 8; i++) {
+      json.append(i == 0 ? "" : ", ").append("\"coin ").append(i).append("\": {\"name\": \"Coin ")
+          .append(i).append("\", \"description\": \"A coin.\", \"value\": 1}");
+    }
+    World world = WorldLoader.load(new StringReader(json.append("}}}}").toString()));
+    SharedWorldState shared = new SharedWorldState(world);
+    int hall = world.getStartingRoom();
+
+    // The other player sees what one takes and drops
+    GameEngine first = new GameEngine(world, shared);
+    GameEngine second = new GameEngine(world, shared);
+    assertEquals(State.SUCCESS, first.takeItem("coin 0").getState());
+    assertEquals(State.FAILURE, second.takeItem("coin 0").getState());
+    assertFalse(Helper.describeRoom(second).contains("Coin 0"));
+    assertEquals(State.SUCCESS, first.dropItem("coin 0").getState());
+    assertEquals(State.SUCCESS, second.takeItem("coin 0").getState());
+    assertEquals(State.FAILURE, second.save("").getState());
+
+    // Players grabbing the same coins at once never duplicate or lose one
+    second.dropItem("coin 0");
+    final GameEngine[] players = new GameEngine[4];
+    Thread[] threads = new Thread[players.length];
+    for (int p = 0; p < players.length; p++) {
+      final GameEngine player = players[p] = new GameEngine(world, shared);
+      final Random random = new Random(p);
+      threads[p] = new Thread(() -> {
+        for (int i = 0; i < 20000; i++) {
+          String coin = "coin " + random.nextInt(8);
+          if (player.getPlayer().getInventory().hasItem(coin)) {
+            player.dropItem(coin);
+          } else {
+            player.takeItem(coin);
+          }
+        }
+      });
+      threads[p].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int i = 0; i < 8; i++) {
+      int coin = world.getItemId("coin " + i);
+      int places = shared.hasItem(hall, coin) ? 1 : 0;
+      for (GameEngine player : players) {
+        places += player.getPlayer().getInventory().hasItem(coin) ? 1 : 0;
+      }
+      assertEquals(1, places);
+    }
+  }
+
+  @Test
+  public void testSharedStoreTradesAreAtomic() throws Exception {
+    StringBuilder json = new StringBuilder("{\"Configuration\": {\"startingRoom\": \"Shop\","
+        + " \"initializationText\": \"Hi\", \"victoryText\": \"Bye\"}, \"Rooms\": {\"Shop\":"
+        + " {\"name\": \"Shop\", \"type\": \"store\", \"description\": \"A shop.\","
+        + " \"requirements\": [], \"directions\": {}, \"items\": {");
+    for (int i = 0; i < 16; i++) {
+      json.append(i == 0 ? "" : ", ").append("\"gem ").append(i).append("\": {\"name\": \"Gem ")
+          .append(i).append("\", \"description\": \"A gem.\", \"value\": ").append(i + 1)
+          .append(".25}");
+    }
+    final World world = WorldLoader.load(new StringReader(json.append("}}}}").toString()));
+    final SharedWorldState shared = new SharedWorldState(world);
+
+    // Every player trades the same few gems as fast as they can with just enough money for some
+    final GameEngine[] players = new GameEngine[4];
+    Thread[] threads = new Thread[players.length];
+    for (int p = 0; p < players.length; p++) {
+      final GameEngine player = players[p] = new GameEngine(world, shared);
+      player.getPlayer().addMoney(2000);
+      final Random random = new Random(p);
+      threads[p] = new Thread(() -> {
+        for (int i = 0; i < 50000; i++) {
+          String gem = "gem " + random.nextInt(16);
+          if (player.getPlayer().getInventory().hasItem(gem)) {
+            player.sellItem(gem);
+          } else {
+            player.buyItem(gem);
+          }
+        }
+      });
+      threads[p].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // No gem is lost or sold twice, and no money appears or disappears
+    long money = 0;
+    for (GameEngine player : players) {
+      money += player.getPlayer().getMoney();
+      assertTrue(player.getPlayer().getMoney() >= 0);
+    }
+    int shop = world.getStartingRoom();
+    for (int i = 0; i < 16; i++) {
+      int gem = world.getItemId("gem " + i);
+      int places = shared.hasItem(shop, gem) ? 1 : 0;
+      for (GameEngine player : players) {
+        if (player.getPlayer().getInventory().hasItem(gem)) {
+          places++;
+          money += world.getItem(gem).getValue();
+        }
+      }
+      assertEquals(1, places);
+    }
+    assertEquals(2000 * players.length, money);
+  }
+
+  @Test
+  public void testConcurrentBuyersGetOneItem() throws Exception {
+    String json = "{\"Configuration\": {\"startingRoom\": \"Shop\", \"initializationText\": \"Hi\","
+        + " \"victoryText\": \"Bye\"},"
+        + " \"Rooms\": {\"Shop\": {\"name\": \"Shop\", \"type\": \"store\","
+        + " \"description\": \"A shop.\", \"requirements\": [], \"directions\": {},"
+        + " \"items\": {\"gem\": {\"name\": \"Gem\", \"description\": \"A gem.\","
+        + " \"value\": 5}}}}}";
+    World world = WorldLoader.load(new StringReader(json));
+    SharedWorldState shared = new SharedWorldState(world);
+    final GameEngine[] players = new GameEngine[4];
+    for (int p = 0; p < players.length; p++) {
+      players[p] = new GameEngine(world, shared);
+      players[p].getPlayer().addMoney(500);
+    }
+
+    // Every round all players try to buy the one gem at once, then the winner sells it back
+    final CyclicBarrier start = new CyclicBarrier(players.length);
+    final Outcome[][] outcomes = new Outcome[players.length][1000];
+    Thread[] threads = new Thread[players.length];
+    for (int p = 0; p < players.length; p++) {
+      final int player = p;
+      threads[p] = new Thread(() -> {
+        try {
+          for (int round = 0; round < outcomes[player].length; round++) {
+            start.await();
+            outcomes[player][round] = players[player].buyItem("gem").getOutcome();
+            start.await();
+            if (outcomes[player][round] == Outcome.TRANSACTION_SUCCESSFUL) {
+              players[player].sellItem("gem");
+            }
+          }
+        } catch (InterruptedException | BrokenBarrierException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      threads[p].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    for (int round = 0; round < outcomes[0].length; round++) {
+      int winners = 0;
+      for (Outcome[] outcome : outcomes) {
+        if (outcome[round] == Outcome.TRANSACTION_SUCCESSFUL) {
+          winners++;
+        } else {
+          assertEquals(Outcome.NOT_FOR_SALE, outcome[round]);
+        }
+      }
+      assertEquals(1, winners);
+    }
+    for (GameEngine player : players) {
+      assertEquals(500, player.getPlayer().getMoney());
+    }
+    assertTrue(shared.hasItem(world.getStartingRoom(), world.getItemId("gem")));
+  }
+
+  @Test
+  public void testMoneyStaysExact() throws IOException {
+    // 0.1 has no exact float, so float money drifted after a few thousand trades
+    String json = "{\"Configuration\": {\"startingRoom\": \"Shop\", \"initializationText\": \"Hi\","
+        + " \"victoryText\": \"Bye\"},"
+        + " \"Rooms\": {\"Shop\": {\"name\": \"Shop\", \"type\": \"store\","
+        + " \"description\": \"A shop.\", \"requirements\": [], \"directions\": {},"
+        + " \"items\": {\"gum\": {\"name\": \"Gum\", \"description\": \"Gum.\","
+        + " \"value\": 0.1}}}}}";
+    World world = WorldLoader.load(new StringReader(json));
+    GameEngine engine = new GameEngine(world);
+    assertEquals(10, world.getItem(world.getItemId("gum")).getValue());
+
+    engine.getPlayer().addMoney(1234);
+    for (int i = 0; i < 1000000; i++) {
+      engine.buyItem("gum");
+      engine.sellItem("gum");
+    }
+    engine.buyItem("gum");
+    assertEquals(1224, engine.getPlayer().getMoney());
+    assertEquals("You have $12.24.", engine.getMoney().getMessage());
+    assertEquals("You have: Gum - $0.1", Helper.buildStringFromList(StringList.INVENTORY,
+        engine));
+
+    // Saves from before money was kept in cents still load
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(SaveGame.MAGIC);
+    out.writeByte(1);
+    out.writeUTF("Shop");
+    out.writeBoolean(false);
+    out.writeFloat(12.34F);
+    out.writeByte(0);
+    out.writeByte(0);
+    SaveGame.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), engine);
+    assertEquals(1234, engine.getPlayer().getMoney());
+  }
+
+  @Test
+  public void testAllMissingRequirementsReported() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    IO manager = new IO(path);
+    manager.start("Ikenberry Commons");
+    GameEngine engine = manager.getEngine();
+
+    // Nothing is missing for a room without requirements
+    assertEquals(null, Helper.getMissingRequirements("The Ike", engine));
+    assertEquals("Package Station Key", Helper.getMissingRequirements("Package Station", engine));
+
+
+    // A room requiring two keys reports both, then only the one still missing
+    manager = new IO(Paths.get("src/main/java/data/requirements.json"));
+    engine = manager.createEngine();
+    Result res = engine.changeDirection("east");
+    assertEquals(State.FAILURE, res.getState());
+    assertTrue(res.getMessage().endsWith("Red Key, Blue Key"));
+
+    engine.takeItem("red key");
+    res = engine.changeDirection("east");
+    assertTrue(res.getMessage().endsWith(": Blue Key"));
+
+    engine.takeItem("blue key");
+    assertEquals(State.VICTORY, engine.changeDirection("east").getState());
+  }
+
+  @Test
+  public void testEnginesShareWorldTemplate() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    IO manager = new IO(path);
+
+    GameEngine first = manager.createEngine();
+    GameEngine second = manager.createEngine();
+    assertEquals(first.getWorld(), second.getWorld());
+
+    first.takeItem("Dining Hall Key");
+    assertTrue(first.getPlayer().getInventory().hasItem("dining hall key"));
+    assertEquals(0, first.getRoomItems().size());
+
+    // The second engine still sees the untouched template
+    assertEquals(1, second.getRoomItems().size());
+    assertEquals(State.SUCCESS, second.takeItem("Dining Hall Key").getState());
+  }
+
+  @Test
+  public void testWorldStateTracksOnlyChanges() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    IO manager = new IO(path);
+
+    GameEngine engine = manager.createEngine();
+    assertEquals(0, engine.getWorldState().changedRooms());
+
+    engine.takeItem("Dining Hall Key");
+    assertEquals(1, engine.getWorldState().changedRooms());
+
+    // Dropping the item back restores the template state
+    engine.dropItem("Dining Hall Key");
+    assertEquals(0, engine.getWorldState().changedRooms());
+    World world = manager.getWorld();
+    assertEquals(1, world.getRoom(world.getRoomId("Ikenberry Commons")).getItems().size());
+  }
+
+  @Test
+  public void testRoomViewsInvalidatedByItemChanges() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    IO manager = new IO(path);
+
+    GameEngine first = manager.createEngine();
+    GameEngine second = manager.createEngine();
+    String view = Helper.describeRoom(first);
+    assertSame(view, Helper.describeRoom(second));
+    assertTrue(view.endsWith("Items visible: Dining Hall Key - $10.0"));
+
+    // Only the engine that changed the room renders it again
+    first.takeItem("Dining Hall Key");
+    assertTrue(Helper.describeRoom(first).endsWith("There are no items here."));
+    assertSame(view, Helper.describeRoom(second));
+
+    first.dropItem("Dining Hall Key");
+    assertSame(view, Helper.describeRoom(first));
+  }
+
+  @Test
+  public void testRoomViewsStayBounded() {
+    RoomViews views = new RoomViews(100);
+    assertEquals(128, views.getCapacity());
+    for (int roomId = 0; roomId < 1000; roomId++) {
+      views.put(roomId, "Room " + roomId);
+    }
+    int cached = 0;
+    for (int roomId = 0; roomId < 1000; roomId++) {
+      String view = views.get(roomId);
+      if (view != null) {
+        assertEquals("Room " + roomId, view);
+        cached++;
+      }
+    }
+    assertEquals(128, cached);
+
+    // A room takes over the slot of the room it shares it with
+    assertEquals("Room 999", views.get(999));
+    views.put(999 - 128, "Room 871");
+    assertNull(views.get(999));
+  }
+
+  @Test
+  public void testCompiledRoomGraph() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    World world = new IO(path).getWorld();
+
+    int commons = world.getRoomId("Ikenberry Commons");
+    assertEquals(world.getRoomId("The Ike"), world.getExit(commons, Direction.EAST));
+    assertEquals(World.NO_ROOM, world.getExit(commons, Direction.SOUTH));
+    assertEquals(World.NO_ROOM, world.getRoomId("Nowhere"));
+
+    assertEquals(RoomType.ROOM, world.getType(commons));
+    assertEquals(RoomType.STORE, world.getType(world.getRoomId("Vending Machine")));
+    assertEquals(RoomType.WIN, world.getType(world.getRoomId("Wassaja Hall")));
+  }
+
+  @Test
+  public void testParserFoldsCaseAndWhitespace() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    GameEngine engine = new IO(path).createEngine();
+    CommandParser parser = new CommandParser();
+
+    assertEquals(State.SUCCESS, parser.perform(engine, "  TAKE   Dining Hall KEY  ").getState());
+    assertTrue(engine.getPlayer().getInventory().hasItem("dining hall key"));
+    assertEquals(State.SUCCESS, parser.perform(engine, "Go EAST").getState());
+    assertEquals("The Ike", engine.getCurrentRoom().getName());
+  }
+
+  @Test
+  public void testParserAliasesAndAbbreviations() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    GameEngine engine = new IO(path).createEngine();
+    CommandParser parser = new CommandParser();
+
+    parser.perform(engine, "get dining hall key");
+    parser.perform(engine, "e");
+    assertEquals("The Ike", engine.getCurrentRoom().getName());
+    parser.perform(engine, "north");
+    assertEquals("Ikenberry Dining Hall", engine.getCurrentRoom().getName());
+
+    Result res = parser.perform(engine, "inv");
+    assertTrue(res.getMessage().contains("Dining Hall Key"));
+    assertTrue(parser.perform(engine, "exa").getMessage().contains("Dining Hall"));
+  }
+
+  @Test
+  public void testParserRejectsUnknownAndAmbiguousVerbs() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    GameEngine engine = new IO(path).createEngine();
+    CommandParser parser = new CommandParser();
+
+    assertEquals(State.FAILURE, parser.perform(engine, "dance").getState());
+    // "ex" could be "exit" or "examine"
+    assertEquals(State.FAILURE, parser.perform(engine, "ex").getState());
+    assertEquals(State.FAILURE, parser.perform(engine, "").getState());
+    assertFalse(engine.isFinished());
+  }
+
+  @Test
+  public void testResultsFormatMessagesLazily() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    GameEngine engine = new IO(path).createEngine();
+    CommandParser parser = new CommandParser();
+
+    // Outcomes without arguments share one Result
+    assertSame(engine.changeDirection("east"), engine.changeDirection("west"));
+    assertSame(engine.buyItem("anything"), engine.buyItem("anything else"));
+    assertEquals("You must be a in a store to buy items!", engine.buyItem("x").getMessage());
+
+    // The parser reuses its argument buffer, which must not change earlier messages
+    Result missing = parser.perform(engine, "drop golden lamp");
+    parser.perform(engine, "drop umbrella");
+    assertEquals(Outcome.NOT_IN_INVENTORY, missing.getOutcome());
+    assertEquals("You do not have \"golden lamp\" in your inventory!", missing.getMessage());
+
+    engine.getPlayer().addMoney(1205);
+    assertEquals("You have $12.05.", parser.perform(engine, "money").getMessage());
+    assertEquals("Route to The Ike (1 move): East",
+        parser.perform(engine, "route the ike").getMessage());
+  }
+
+  @Test
+  public void testLongScriptedSession() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    IO manager = new IO(path);
+
+    // Far more commands than the stack could hold if each command recursed into the next
+    StringBuilder script = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      script.append("go east\ngo west\n");
+    }
+    script.append("quit\n");
+
+    runSilently(manager, script.toString());
+    assertTrue(manager.getEngine().isFinished());
+    assertEquals("Ikenberry Commons", manager.getEngine().getCurrentRoom().getName());
+  }
+
+  @Test
+  public void testScriptedVictory() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    IO manager = new IO(path);
+
+    String script = "take dining hall key\ngo east\ntake uiuc face mask\n"
+        + "take package station key\ngo south\ntake hand sanitizer\ntake toilet paper\n"
+        + "go north\ngo north\ntake vending machine key\ntake moldy candy bar\ngo south\n"
+        + "go east\nsell toilet paper\nsell hand sanitizer\nsell uiuc face mask\n"
+        + "sell moldy candy bar\nsell package station key\nbuy blood-stained wassaja icard\n"
+        + "go west\ngo west\ngo west\ngo east\n";
+    String output = runSilently(manager, script);
+
+    assertTrue(output.startsWith(manager.getWorld().getConfiguration().getInitializationText()));
+    assertTrue(output.endsWith(manager.getWorld().getConfiguration().getVictoryText() + "\n"));
+    assertEquals("Wassaja Hall", manager.getEngine().getCurrentRoom().getName());
+    assertTrue(manager.getEngine().isFinished());
+  }
+
+  @Test
+  public void testRouteRespectsRequirements() throws IOException {
+    World world = WorldLoader.load(Paths.get("src/main/java/data/data.json"));
+    GameEngine engine = new GameEngine(world);
+    CommandParser parser = new CommandParser();
+    assertEquals("Route to The Ike (1 move): East", parser.perform(engine, "route the ike")
+        .getMessage());
+
+    // The dining hall needs its key, which the player starts next to
+    assertEquals(State.FAILURE, parser.perform(engine, "route ikenberry dining hall").getState());
+    engine.takeItem("dining hall key");
+    assertEquals("Route to Ikenberry Dining Hall (2 moves): East, North",
+        parser.perform(engine, "route ikenberry dining hall").getMessage());
+
+    assertEquals(State.FAILURE, parser.perform(engine, "route ikenberry commons").getState());
+    assertEquals(State.FAILURE, parser.perform(engine, "route the moon").getState());
+  }
+
+  @Test
+  public void testRoutesAreShortest() throws IOException {
+    StringWriter json = new StringWriter();
+    new WorldGenerator(11).rooms(500).branching(3).requirementDepth(6).write(json);
+    World world = WorldLoader.load(new StringReader(json.toString()));
+    Inventory inventory = new Player(world).getInventory();
+    RouteIndex routes = world.getRoutes();
+
+    Random random = new Random(11);
+    for (int i = 0; i < 200; i++) {
+      int from = random.nextInt(world.getRoomCount());
+      int to = random.nextInt(world.getRoomCount());
+      Direction[] route = routes.route(from, to, inventory);
+
+      // Compare against a breadth-first search through the rooms the player may enter
+      int[] distance = new int[world.getRoomCount()];
+      Arrays.fill(distance, -1);
+      ArrayDeque<Integer> queue = new ArrayDeque<>();
+      distance[from] = 0;
+      queue.add(from);
+      while (!queue.isEmpty()) {
+        int room = queue.poll();
+        for (Direction direction : Direction.values()) {
+          int next = world.getExit(room, direction);
+          if (next != World.NO_ROOM && distance[next] < 0
+              && world.meetsRequirements(next, inventory)) {
+            distance[next] = distance[room] + 1;
+            queue.add(next);
+          }
+        }
+      }
+
+      if (distance[to] < 0) {
+        assertNull(route);
+        continue;
+      }
+      assertEquals(distance[to], route.length);
+      int room = from;
+      for (Direction direction : route) {
+        room = world.getExit(room, direction);
+      }
+      assertEquals(to, room);
+    }
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    World world = WorldLoader.load(Paths.get("src/main/java/data/data.json"));
+    GameEngine engine = new GameEngine(world);
+    CommandParser parser = new CommandParser();
+    for (String command : new String[] {"take dining hall key", "go east", "take uiuc face mask",
+        "take package station key", "drop dining hall key", "go south"}) {
+      assertEquals(State.SUCCESS, parser.perform(engine, command).getState());
+    }
+    engine.getPlayer().addMoney(1250);
+    assertEquals(State.SUCCESS, parser.perform(engine, "save test-game").getState());
+
+    GameEngine loaded = new GameEngine(world);
+    assertEquals(Helper.describeRoom(engine), parser.perform(loaded, "load test-game")
+        .getMessage());
+    assertEquals("Package Station", loaded.getCurrentRoom().getName());
+    assertEquals(1250, loaded.getPlayer().getMoney());
+    assertTrue(loaded.getPlayer().getInventory().hasItem("uiuc face mask"));
+    assertFalse(loaded.getPlayer().getInventory().hasItem("dining hall key"));
+    int ike = world.getRoomId("The Ike");
+    assertTrue(loaded.getWorldState().hasItem(ike, world.getItemId("dining hall key")));
+    assertFalse(loaded.getWorldState().hasItem(ike, world.getItemId("uiuc face mask")));
+    assertFalse(loaded.getWorldState().hasItem(world.getRoomId("Ikenberry Commons"),
+        world.getItemId("dining hall key")));
+
+    assertEquals(State.FAILURE, parser.perform(loaded, "load no-such-game").getState());
+    assertEquals(State.FAILURE, parser.perform(loaded, "save ../outside").getState());
+    assertEquals(State.FAILURE, parser.perform(loaded, "load ../outside").getState());
+  }
+
+  @Test
+  public void testSessionsKeepSavesApart() throws IOException {
+    SessionManager sessions = new SessionManager(Paths.get("src/main/java/data/data.json"));
+    Session first = sessions.create();
+    Session second = sessions.create();
+    assertEquals(State.SUCCESS, first.perform("take dining hall key").getState());
+    assertEquals(State.SUCCESS, first.perform("save").getState());
+    assertEquals(State.FAILURE, second.perform("load").getState());
+
+    // Saving under the same name leaves the other session's game as it was
+    assertEquals(State.SUCCESS, second.perform("save").getState());
+    assertEquals(State.SUCCESS, second.perform("load quicksave").getState());
+    assertFalse(second.getEngine().getPlayer().getInventory().hasItem("dining hall key"));
+    assertEquals(State.SUCCESS, first.perform("drop dining hall key").getState());
+    assertEquals(State.SUCCESS, first.perform("load quicksave").getState());
+    assertTrue(first.getEngine().getPlayer().getInventory().hasItem("dining hall key"));
+
+    // Ending a session deletes its saves
+    Path directory = first.getEngine().getSaveDirectory();
+    assertTrue(Files.exists(directory));
+    sessions.remove(first.getId());
+    assertFalse(Files.exists(directory));
+    sessions.remove(second.getId());
+  }
+
+  @Test
+  public void testSaveLoadsIntoRebuiltWorld() throws IOException {
+    Path path = Paths.get("src/main/java/data/data.json");
+    World world = WorldLoader.load(path);
+    GameEngine engine = new GameEngine(world);
+    engine.takeItem("dining hall key");
+    engine.changeDirection("east");
+    byte[] save = SaveGame.save(engine);
+    assertTrue(save.length < 100);
+
+    // A new room and item ahead of every other one shift all ids
+    String json = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).replace(
+        "\"Rooms\":{", "\"Rooms\":{\"Attic\": {\"name\": \"Attic\", \"type\": \"room\","
+            + " \"description\": \"Dusty.\", \"items\": {\"old box\": {\"name\": \"Old Box\","
+            + " \"description\": \"A box.\", \"value\": 1}}, \"requirements\": [],"
+            + " \"directions\": {}},");
+    World rebuilt = WorldLoader.load(new StringReader(json));
+    assertNotEquals(world.getRoomId("The Ike"), rebuilt.getRoomId("The Ike"));
+
+    GameEngine loaded = new GameEngine(rebuilt);
+    SaveGame.read(new DataInputStream(new ByteArrayInputStream(save)), loaded);
+    assertEquals("The Ike", loaded.getCurrentRoom().getName());
+    assertTrue(loaded.getPlayer().getInventory().hasItem("dining hall key"));
+    assertFalse(loaded.getWorldState().hasItem(rebuilt.getRoomId("Ikenberry Commons"),
+        rebuilt.getItemId("dining hall key")));
+
+    // Corrupt saves leave the game untouched
+    try {
+      SaveGame.read(new DataInputStream(new ByteArrayInputStream(
+          Arrays.copyOf(save, save.length / 2))), loaded);
+      fail();
+    } catch (IOException expected) {
+      assertTrue(loaded.getPlayer().getInventory().hasItem("dining hall key"));
+    }
+  }
+
+  @Test
+  public void testLatencyHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram("test");
+    for (long value = 1; value <= 100000; value++) {
+      histogram.record(value);
+    }
+    assertEquals(100000, histogram.getCount());
+    assertEquals(50000, histogram.getMean());
+    assertEquals(50000, histogram.getPercentile(0.5), 50000 / 16);
+    assertEquals(99000, histogram.getPercentile(0.99), 99000 / 16);
+    assertEquals(99900, histogram.getPercentile(0.999), 99900 / 16);
+
+    // Every value lands in a bucket whose highest value is at most 1/16 above it
+    for (long value = 0; value < LatencyHistogram.MAX_NANOS; value = value * 3 / 2 + 1) {
+      long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+      assertTrue(highest >= value && highest <= value + value / 16);
+    }
+  }
+
+  @Test
+  public void testMetricsCountCommands() throws IOException {
+    World world = WorldLoader.load(Paths.get("src/main/java/data/data.json"));
+    GameEngine engine = new GameEngine(world);
+    CommandParser parser = new CommandParser();
+    Map<String, Long> before = Metrics.topRoomVisits(world);
+    long failures = Metrics.getResultCount(State.FAILURE);
+    long goes = Metrics.histogram(Metrics.ACTION_PREFIX + "go").getCount();
+    long moves = Metrics.histogram("GameEngine.changeDirection").getCount();
+
+    parser.perform(engine, "go east");
+    parser.perform(engine, "w");
+    parser.perform(engine, "go east");
+    parser.perform(engine, "dance");
+
+    assertEquals(goes + 3, Metrics.histogram(Metrics.ACTION_PREFIX + "go").getCount());
+    assertEquals(moves + 3, Metrics.histogram("GameEngine.changeDirection").getCount());
+    assertEquals(failures + 1, Metrics.getResultCount(State.FAILURE));
+    assertTrue(before.isEmpty());
+    assertEquals(2L, (long) Metrics.topRoomVisits(world).get("The Ike"));
+    assertTrue(Metrics.report(world).contains("adventure_room_visits_total{room=\"The Ike\"} 2"));
+  }
+
+  @Test
+  public void testMetricsAddUpAcrossThreads() throws InterruptedException {
+    LatencyHistogram histogram = new LatencyHistogram("test");
+    RoomVisits visits = new RoomVisits();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          histogram.record(100);
+          visits.increment(i % 1000);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(80000, histogram.getCount());
+    assertEquals(100, histogram.getMean());
+    assertEquals(100, histogram.getPercentile(0.5), 100 / 16);
+    assertEquals(80, visits.get(999));
+    assertEquals(0, visits.get(1000));
+    long[][] counts = visits.getCounts();
+    assertEquals(1000, counts.length);
+    for (long[] room : counts) {
+      assertEquals(80, room[1]);
+    }
+    assertEquals(0, visits.getUntracked());
+
+    // Rooms beyond what the tables hold are still counted, just not by room
+    RoomVisits crowded = new RoomVisits();
+    int rooms = RoomVisits.ROOMS_PER_STRIPE * Stripes.COUNT * 2;
+    for (int room = 0; room < rooms; room++) {
+      crowded.increment(room);
+    }
+    long tracked = 0;
+    for (long[] room : crowded.getCounts()) {
+      tracked += room[1];
+    }
+    assertTrue(crowded.getCounts().length <= RoomVisits.ROOMS_PER_STRIPE * Stripes.COUNT);
+    assertTrue(crowded.getUntracked() > 0);
+    assertEquals(rooms, tracked + crowded.getUntracked());
+  }
+
+  @Test
+  public void testJournalRecoversSessions() throws IOException {
+    Path world = Paths.get("src/main/java/data/data.json");
+    Path directory = Files.createTempDirectory("journal");
+
+    SessionManager manager = new SessionManager(world, directory, 1, 3600);
+    Session first = manager.create();
+    first.perform("take", "dining hall key");
+    first.perform("go", "east");
+    first.perform("go", "nowhere");
+    Session ended = manager.create();
+    manager.remove(ended.getId());
+    manager.close();
+
+    // Journal only
+    manager = new SessionManager(world, directory, 1, 3600);
+    assertEquals(1, manager.size());
+    Session recovered = manager.get(first.getId());
+    assertEquals("The Ike", recovered.getEngine().getCurrentRoom().getName());
+    assertTrue(recovered.getEngine().getPlayer().getInventory().hasItem("dining hall key"));
+
+    // Snapshot followed by more commands
+    recovered.perform("take", "package station key");
+    manager.snapshot();
+    recovered.perform("go", "south");
+    Session second = manager.create();
+    second.perform("go", "east");
+    manager.close();
+
+    manager = new SessionManager(world, directory, 1, 3600);
+    assertEquals(2, manager.size());
+    GameEngine engine = manager.get(first.getId()).getEngine();
+    assertEquals("Package Station", engine.getCurrentRoom().getName());
+    assertTrue(engine.getPlayer().getInventory().hasItem("package station key"));
+    assertFalse(engine.getWorldState().hasItem(engine.getWorld().getRoomId("The Ike"),
+        engine.getWorld().getItemId("package station key")));
+    assertEquals("The Ike", manager.get(second.getId()).getEngine().getCurrentRoom().getName());
+
+    // Sessions created after recovery do not reuse recorded numbers
+    Session loaded = manager.create();
+    assertNotEquals(manager.get(first.getId()).getNumber(), loaded.getNumber());
+
+    // Loaded games are journaled as the state loaded
+    assertEquals(State.SUCCESS, loaded.load(manager.get(first.getId()).save()).getState());
+    manager.close();
+    manager = new SessionManager(world, directory, 1, 3600);
+    assertEquals("Package Station",
+        manager.get(loaded.getId()).getEngine().getCurrentRoom().getName());
+    manager.close();
+  }
+
+  @Test
+  public void testJournalIgnoresTornRecord() throws IOException {
+    Path world = Paths.get("src/main/java/data/data.json");
+    Path directory = Files.createTempDirectory("journal");
+
+    SessionManager manager = new SessionManager(world, directory, 1, 3600);
+    Session session = manager.create();
+    session.perform("take", "dining hall key");
+    manager.close();
+
+    // A crash in the middle of a record leaves only part of it behind
+    Path segment;
+    try (Stream<Path> files = Files.list(directory)) {
+      segment = files.filter(file -> file.toString().endsWith(".log")).sorted()
+          .reduce((a, b) -> b).get();
+    }
+    Files.write(segment, new byte[] {0, 0, 0, 40, 2, 0, 0}, StandardOpenOption.APPEND);
+
+    manager = new SessionManager(world, directory, 1, 3600);
+    assertTrue(manager.get(session.getId()).getEngine().getPlayer().getInventory()
+        .hasItem("dining hall key"));
+    manager.close();
+  }
+
+  @Test
+  public void testJournalOnlyRecordsChanges() throws IOException {
+    Path world = Paths.get("src/main/java/data/data.json");
+    Path directory = Files.createTempDirectory("journal");
+
+    SessionManager manager = new SessionManager(world, directory, 1, 3600);
+    Session session = manager.create();
+    session.perform("take", "dining hall key");
+    manager.sync();
+    long journaled = journalSize(directory);
+
+    // Looking around and saving leave the game as it was
+    for (String command : new String[] {"examine", "inventory", "money", "route the ike",
+        "inspect dining hall key", "save", "go nowhere"}) {
+      session.perform(command);
+    }
+    manager.sync();
+    assertEquals(journaled, journalSize(directory));
+
+    session.perform("go", "east");
+    manager.sync();
+    assertTrue(journalSize(directory) > journaled);
+    manager.remove(session.getId());
+    manager.close();
+  }
+
+  @Test
+  public void testJournalSkipsSessionsThatNoLongerReplay() throws IOException {
+    Path world = Paths.get("src/main/java/data/data.json");
+    Path directory = Files.createTempDirectory("journal");
+
+    SessionManager manager = new SessionManager(world, directory, 1, 3600);
+    Session keyHolder = manager.create();
+    keyHolder.perform("take", "dining hall key");
+    Session walker = manager.create();
+    walker.perform("go", "east");
+    manager.close();
+
+    // The key is somewhere else in the rebuilt world, so only one session replays as played
+    JsonObject json = new JsonParser().parse(new String(Files.readAllBytes(world),
+        StandardCharsets.UTF_8)).getAsJsonObject();
+    JsonObject rooms = json.getAsJsonObject("Rooms");
+    JsonElement key = rooms.getAsJsonObject("Ikenberry Commons").getAsJsonObject("items")
+        .remove("dining hall key");
+    rooms.getAsJsonObject("The Ike").getAsJsonObject("items").add("dining hall key", key);
+    Path moved = Files.createTempFile("moved", ".json");
+    Files.write(moved, json.toString().getBytes(StandardCharsets.UTF_8));
+
+    manager = new SessionManager(moved, directory, 1, 3600);
+    assertEquals(1, manager.size());
+    assertNull(manager.get(keyHolder.getId()));
+    assertEquals("The Ike", manager.get(walker.getId()).getEngine().getCurrentRoom().getName());
+    manager.close();
+
+    // The skipped session stays ended
+    manager = new SessionManager(world, directory, 1, 3600);
+    assertEquals(1, manager.size());
+    manager.close();
+    Files.delete(moved);
+  }
+
+  private static long journalSize(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.toString().endsWith(".log")).mapToLong(file -> {
+        try {
+          return Files.size(file);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }).sum();
+    }
+  }
+
+  private static State replay(World world, List<String> commands) {
+    GameEngine engine = new GameEngine(world);
+    CommandParser parser = new CommandParser();
+    State state = null;
+    for (String command : commands) {
+      state = parser.perform(engine, command).getState();
+      assertFalse(state == State.FAILURE);
+    }
+    return state;
+  }
+
+  private static String runSilently(IO manager, String script) {
+    MemorySink out = new MemorySink();
+    manager.start(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)), out);
+    return out.getOutput();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,386 @@
+package student.adventure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Scanner;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GameServerTest {
+
+  /**
+   * Testing Strategy
+   *
+   * - Sessions
+   *    - Creating a session returns its id and starting room
+   *    - Sessions do not share Player or world state
+   *    - Unknown sessions and actions --> 404
+   *    - In a shared world, sessions see each other's changes and cannot be saved
+   *
+   * - Actions return their Result as JSON
+   *    - Batches return a Result per command and can stop at the first failure
+   *    - Empty batches are rejected --> 400
+   *
+   * - Saved games download and load into another session
+   *
+   * - Metrics are published as text and over JMX
+   *
+   * - Routes list the directions to a room; unknown rooms --> 404
+   *
+   * - WebSocket play
+   *    - Each command line gets one message with its console output; quitting closes the socket
+   *    - Sockets can attach to sessions started over HTTP; unknown sessions are closed at once
+   */
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private HttpServer server;
+  private String base;
+
+  @Before
+  public void startServer() throws IOException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    base = "http://localhost:" + port + "/";
+    server = GameServer.start(URI.create(base), Paths.get("src/main/java/data/data.json"));
+  }
+
+  @After
+  public void stopServer() {
+    server.shutdownNow();
+  }
+
+  @Test
+  public void testCreateSession() throws IOException {
+    JsonNode created = request("POST", "sessions");
+
+    assertTrue(created.get("id").asText().length() > 0);
+    assertEquals("SUCCESS", created.get("result").get("state").asText());
+    assertTrue(created.get("result").get("message").asText().contains("Ikenberry Commons"));
+  }
+
+  @Test
+  public void testActionsReturnResult() throws IOException {
+    String id = request("POST", "sessions").get("id").asText();
+
+    JsonNode res = request("POST", "sessions/" + id + "/take/dining%20hall%20key");
+    assertEquals("SUCCESS", res.get("state").asText());
+
+    res = request("POST", "sessions/" + id + "/go/south");
+    assertEquals("FAILURE", res.get("state").asText());
+
+    res = request("POST", "sessions/" + id + "/inventory");
+    assertTrue(res.get("message").asText().contains("Dining Hall Key"));
+  }
+
+  @Test
+  public void testSessionsAreIndependent() throws IOException {
+    String first = request("POST", "sessions").get("id").asText();
+    String second = request("POST", "sessions").get("id").asText();
+    assertNotEquals(first, second);
+
+    request("POST", "sessions/" + first + "/take/dining%20hall%20key");
+
+    // The second player still sees the key in the room and has nothing
+    JsonNode res = request("POST", "sessions/" + second + "/take/dining%20hall%20key");
+    assertEquals("SUCCESS", res.get("state").asText());
+    res = request("POST", "sessions/" + first + "/go/east");
+    assertEquals("SUCCESS", res.get("state").asText());
+  }
+
+  @Test
+  public void testSharedWorldSessions() throws IOException {
+    server.shutdownNow();
+    server = GameServer.start(URI.create(base),
+        new SessionManager(Paths.get("src/main/java/data/data.json"), true));
+    String first = request("POST", "sessions").get("id").asText();
+    String second = request("POST", "sessions").get("id").asText();
+
+    // The key the first player took is gone for the second too
+    request("POST", "sessions/" + first + "/take/dining%20hall%20key");
+    JsonNode res = request("POST", "sessions/" + second + "/take/dining%20hall%20key");
+    assertEquals("FAILURE", res.get("state").asText());
+    res = request("POST", "sessions/" + second + "/examine");
+    assertFalse(res.get("message").asText().contains("Dining Hall Key"));
+    assertEquals(409, status("GET", "sessions/" + first + "/state"));
+  }
+
+  @Test
+  public void testBatch() throws IOException {
+    String id = request("POST", "sessions").get("id").asText();
+
+    JsonNode results = post("sessions/" + id + "/batch", "[\"take dining hall key\", \"go south\","
+        + " \"go east\", \"inventory\"]");
+    assertEquals(4, results.size());
+    assertEquals("FAILURE", results.get(1).get("state").asText());
+    assertTrue(results.get(3).get("message").asText().contains("Dining Hall Key"));
+
+    // Stops after the failing command, and the next batch goes on from there
+    results = post("sessions/" + id + "/batch?stopOnFailure=true", "[\"go north\","
+        + " \"dance\", \"go south\"]");
+    assertEquals(2, results.size());
+    assertEquals("FAILURE", results.get(1).get("state").asText());
+    results = post("sessions/" + id + "/batch", "[\"go south\"]");
+    assertTrue(results.get(0).get("message").asText().contains("at the Ike"));
+    assertEquals(404, status("POST", "sessions/nope/batch"));
+  }
+
+  @Test
+  public void testEmptyBatchIsRejected() throws IOException {
+    String id = request("POST", "sessions").get("id").asText();
+
+    assertEquals(400, postStatus("sessions/" + id + "/batch", "[]"));
+    assertEquals(400, postStatus("sessions/" + id + "/batch", "[\"look\", null]"));
+    assertEquals(1, post("sessions/" + id + "/batch", "[\"look\"]").size());
+  }
+
+  @Test
+  public void testWebSocketPlay() throws IOException, InterruptedException {
+    SessionManager sessions = new SessionManager(Paths.get("src/main/java/data/data.json"));
+    server.shutdownNow();
+    server = GameServer.start(URI.create(base), sessions);
+
+    try (TestWebSocket socket = new TestWebSocket(base, PlayApplication.PATH)) {
+      String opening = socket.receive();
+      assertTrue(opening.startsWith(sessions.getWorld().getConfiguration()
+          .getInitializationText()));
+      assertTrue(opening.contains("Ikenberry Commons"));
+      assertEquals(1, sessions.size());
+
+      // One message back per command, even for commands that print nothing
+      socket.send("take dining hall key");
+      socket.send("go east");
+      socket.send("drop dining hall key");
+      socket.send("dance");
+      assertTrue(socket.receive().length() > 0);
+      assertTrue(socket.receive().contains("at the Ike"));
+      assertEquals("", socket.receive());
+      assertEquals("I don't quite understand \"dance\"!\n", socket.receive());
+
+      socket.send("quit");
+      assertEquals("", socket.receive());
+      assertEquals(null, socket.receive());
+    }
+
+    // The session opened with the socket ends with it
+    for (int wait = 0; sessions.size() > 0 && wait < 100; wait++) {
+      Thread.sleep(50);
+    }
+    assertEquals(0, sessions.size());
+
+    // Sockets can also play a session started over HTTP, which outlives them
+    String id = request("POST", "sessions").get("id").asText();
+    request("POST", "sessions/" + id + "/take/dining%20hall%20key");
+    try (TestWebSocket socket = new TestWebSocket(base, PlayApplication.PATH + "/" + id)) {
+      socket.receive();
+      socket.send("inventory");
+      assertTrue(socket.receive().contains("Dining Hall Key"));
+    }
+    try (TestWebSocket socket = new TestWebSocket(base, PlayApplication.PATH + "/nope")) {
+      assertEquals(null, socket.receive());
+    }
+    assertEquals(200, status("GET", "sessions/" + id));
+  }
+
+  @Test
+  public void testUnknownSessionAndAction() throws IOException {
+    String id = request("POST", "sessions").get("id").asText();
+
+    assertEquals(404, status("POST", "sessions/nope/go/east"));
+    assertEquals(404, status("POST", "sessions/" + id + "/dance"));
+    assertEquals(204, status("DELETE", "sessions/" + id));
+    assertEquals(404, status("GET", "sessions/" + id));
+  }
+
+  @Test
+  public void testRoute() throws IOException {
+    String id = request("POST", "sessions").get("id").asText();
+
+    JsonNode route = request("GET", "sessions/" + id + "/routes/the%20ike");
+    assertEquals("The Ike", route.get("room").asText());
+    assertEquals(1, route.get("distance").asInt());
+    assertEquals("East", route.get("directions").get(0).asText());
+
+    route = request("GET", "sessions/" + id + "/routes/package%20station");
+    assertFalse(route.get("reachable").asBoolean());
+    assertEquals(404, status("GET", "sessions/" + id + "/routes/the%20moon"));
+  }
+
+  @Test
+  public void testSaveAndLoadState() throws IOException {
+    String first = request("POST", "sessions").get("id").asText();
+    request("POST", "sessions/" + first + "/take/dining%20hall%20key");
+    request("POST", "sessions/" + first + "/go/east");
+
+    HttpURLConnection download = open("GET", "sessions/" + first + "/state");
+    ByteArrayOutputStream save = new ByteArrayOutputStream();
+    try (InputStream in = download.getInputStream()) {
+      byte[] buffer = new byte[256];
+      for (int read; (read = in.read(buffer)) > 0; ) {
+        save.write(buffer, 0, read);
+      }
+    }
+
+    String second = request("POST", "sessions").get("id").asText();
+    HttpURLConnection upload = open("PUT", "sessions/" + second + "/state");
+    upload.setDoOutput(true);
+    upload.setRequestProperty("Content-Type", "application/octet-stream");
+    try (OutputStream out = upload.getOutputStream()) {
+      out.write(save.toByteArray());
+    }
+    JsonNode res;
+    try (InputStream in = upload.getInputStream()) {
+      res = mapper.readTree(in);
+    }
+    assertEquals("SUCCESS", res.get("state").asText());
+    assertTrue(res.get("message").asText().contains("at the Ike"));
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    String id = request("POST", "sessions").get("id").asText();
+    request("POST", "sessions/" + id + "/go/east");
+
+    HttpURLConnection connection = open("GET", "metrics");
+    String report;
+    try (Scanner in = new Scanner(connection.getInputStream(), "UTF-8")) {
+      report = in.useDelimiter("\\A").next();
+    }
+    assertTrue(report.contains("adventure_commands_total{verb=\"go\"}"));
+    assertTrue(report.contains("adventure_latency_nanos{name=\"GameEngine.changeDirection\","
+        + "quantile=\"0.99\"}"));
+    assertTrue(report.contains("adventure_room_visits_total{room=\"The Ike\"} 1"));
+
+    Object counts = ManagementFactory.getPlatformMBeanServer()
+        .getAttribute(new ObjectName(Metrics.OBJECT_NAME), "ResultCounts");
+    assertTrue(counts instanceof TabularData);
+  }
+
+  /**
+   * Bare WebSocket client: sends unfragmented text messages and reads the server's replies
+   */
+  private static class TestWebSocket implements Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+
+    private TestWebSocket(String base, String path) throws IOException {
+      URI uri = URI.create(base);
+      socket = new Socket(uri.getHost(), uri.getPort());
+      socket.setSoTimeout(10000);
+      in = new DataInputStream(socket.getInputStream());
+      out = socket.getOutputStream();
+      out.write(("GET " + path + " HTTP/1.1\r\nHost: " + uri.getHost() + ":" + uri.getPort()
+          + "\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+          + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n")
+          .getBytes(StandardCharsets.US_ASCII));
+
+      // Skip the response headers up to the blank line
+      StringBuilder headers = new StringBuilder();
+      while (!headers.toString().endsWith("\r\n\r\n")) {
+        headers.append((char) in.readUnsignedByte());
+      }
+      assertTrue(headers.toString().startsWith("HTTP/1.1 101"));
+    }
+
+    private void send(String text) throws IOException {
+      // Clients must mask their frames; a zero mask leaves the payload as it is
+      byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+      ByteArrayOutputStream frame = new ByteArrayOutputStream();
+      frame.write(0x81);
+      if (payload.length < 126) {
+        frame.write(0x80 | payload.length);
+      } else {
+        frame.write(0x80 | 126);
+        frame.write(payload.length >>> 8);
+        frame.write(payload.length);
+      }
+      frame.write(new byte[4]);
+      frame.write(payload);
+      out.write(frame.toByteArray());
+    }
+
+    /**
+     * Returns the next text message, or null once the server closes the connection
+     */
+    private String receive() throws IOException {
+      int opcode = in.readUnsignedByte() & 0x0F;
+      long length = in.readUnsignedByte() & 0x7F;
+      if (length == 126) {
+        length = in.readUnsignedShort();
+      } else if (length == 127) {
+        length = in.readLong();
+      }
+      byte[] payload = new byte[(int) length];
+      in.readFully(payload);
+      return opcode == 0x8 ? null : new String(payload, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+
+  private JsonNode request(String method, String path) throws IOException {
+    HttpURLConnection connection = open(method, path);
+    try (InputStream in = connection.getInputStream()) {
+      return mapper.readTree(in);
+    }
+  }
+
+  private JsonNode post(String path, String json) throws IOException {
+    try (InputStream in = send(path, json).getInputStream()) {
+      return mapper.readTree(in);
+    }
+  }
+
+  private int status(String method, String path) throws IOException {
+    return open(method, path).getResponseCode();
+  }
+
+  private int postStatus(String path, String json) throws IOException {
+    return send(path, json).getResponseCode();
+  }
+
+  private HttpURLConnection send(String path, String json) throws IOException {
+    HttpURLConnection connection = open("POST", path);
+    connection.setDoOutput(true);
+    connection.setRequestProperty("Content-Type", "application/json");
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(json.getBytes(StandardCharsets.UTF_8));
+    }
+    return connection;
+  }
+
+  private HttpURLConnection open(String method, String path) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+    connection.setRequestMethod(method);
+    return connection;
+  }
+}